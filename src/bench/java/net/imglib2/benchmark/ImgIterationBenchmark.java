@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Iteration with cursors and random accesses over the basic containers.
+ * The image content is blocky (constant in 16<sup>3</sup> blocks), so that
+ * the {@code NtreeImg} stays small.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 2 )
+public class ImgIterationBenchmark
+{
+	@Param( { "array", "planar", "cell", "ntree" } )
+	public String container;
+
+	private final long[] dimensions = { 128, 128, 128 };
+
+	private Img< FloatType > img;
+
+	private long[][] positions;
+
+	static ImgFactory< FloatType > factory( final String container )
+	{
+		switch ( container )
+		{
+		case "array":
+			return new ArrayImgFactory< FloatType >();
+		case "planar":
+			return new PlanarImgFactory< FloatType >();
+		case "cell":
+			return new CellImgFactory< FloatType >( 32 );
+		case "ntree":
+			return new NtreeImgFactory< FloatType >();
+		default:
+			throw new IllegalArgumentException( "Unknown container: " + container );
+		}
+	}
+
+	@Setup
+	public void setup()
+	{
+		img = factory( container ).create( dimensions, new FloatType() );
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( ( c.getIntPosition( 0 ) / 16 ) + ( c.getIntPosition( 1 ) / 16 ) + ( c.getIntPosition( 2 ) / 16 ) );
+		}
+
+		final Random random = new Random( 42 );
+		positions = new long[ 1 << 16 ][ 3 ];
+		for ( final long[] position : positions )
+			for ( int d = 0; d < 3; ++d )
+				position[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		double sum = 0;
+		for ( final FloatType t : img )
+			sum += t.get();
+		return sum;
+	}
+
+	@Benchmark
+	public double localizingCursor()
+	{
+		double sum = 0;
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			sum += c.get().get() * c.getLongPosition( 0 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double randomAccessScan()
+	{
+		double sum = 0;
+		final RandomAccess< FloatType > a = img.randomAccess();
+		for ( long z = 0; z < dimensions[ 2 ]; ++z )
+		{
+			a.setPosition( z, 2 );
+			for ( long y = 0; y < dimensions[ 1 ]; ++y )
+			{
+				a.setPosition( y, 1 );
+				a.setPosition( 0, 0 );
+				for ( long x = 0; x < dimensions[ 0 ]; ++x )
+				{
+					sum += a.get().get();
+					a.fwd( 0 );
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double randomAccessRandomPositions()
+	{
+		double sum = 0;
+		final RandomAccess< FloatType > a = img.randomAccess();
+		for ( final long[] position : positions )
+		{
+			a.setPosition( position );
+			sum += a.get().get();
+		}
+		return sum;
+	}
+}
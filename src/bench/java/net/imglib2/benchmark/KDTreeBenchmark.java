@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Construction of and searches on a {@link KDTree} of uniformly distributed
+ * random points.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 2 )
+public class KDTreeBenchmark
+{
+	@Param( { "3" } )
+	public int numDimensions;
+
+	@Param( { "100000" } )
+	public int numPoints;
+
+	private final int numQueries = 10000;
+
+	private ArrayList< FloatType > values;
+
+	private ArrayList< RealPoint > points;
+
+	private ArrayList< RealPoint > queries;
+
+	private KDTree< FloatType > tree;
+
+	private static ArrayList< RealPoint > randomPoints( final int n, final int numDimensions, final Random random )
+	{
+		final ArrayList< RealPoint > points = new ArrayList<>( n );
+		final double[] position = new double[ numDimensions ];
+		for ( int i = 0; i < n; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				position[ d ] = random.nextDouble();
+			points.add( new RealPoint( position ) );
+		}
+		return points;
+	}
+
+	@Setup
+	public void setup()
+	{
+		final Random random = new Random( 42 );
+		points = randomPoints( numPoints, numDimensions, random );
+		queries = randomPoints( numQueries, numDimensions, random );
+		values = new ArrayList<>( numPoints );
+		for ( int i = 0; i < numPoints; ++i )
+			values.add( new FloatType( i ) );
+		tree = new KDTree<>( values, points );
+	}
+
+	@Benchmark
+	public KDTree< FloatType > build()
+	{
+		return new KDTree<>( values, points );
+	}
+
+	@Benchmark
+	public double nearestNeighbor()
+	{
+		final NearestNeighborSearchOnKDTree< FloatType > search = new NearestNeighborSearchOnKDTree<>( tree );
+		double sum = 0;
+		for ( final RealPoint query : queries )
+		{
+			search.search( query );
+			sum += search.getSquareDistance();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double kNearestNeighbors()
+	{
+		final KNearestNeighborSearchOnKDTree< FloatType > search = new KNearestNeighborSearchOnKDTree<>( tree, 10 );
+		double sum = 0;
+		for ( final RealPoint query : queries )
+		{
+			search.search( query );
+			sum += search.getSquareDistance( 9 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long radiusNeighbors()
+	{
+		final RadiusNeighborSearchOnKDTree< FloatType > search = new RadiusNeighborSearchOnKDTree<>( tree );
+		long sum = 0;
+		for ( final RealPoint query : queries )
+		{
+			search.search( query, 0.05, false );
+			sum += search.numNeighbors();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Iteration over common views of an image.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 2 )
+public class ViewIterationBenchmark
+{
+	@Param( { "array", "cell" } )
+	public String container;
+
+	private Img< FloatType > img;
+
+	private Interval inner;
+
+	private Interval outer;
+
+	@Setup
+	public void setup()
+	{
+		img = ImgIterationBenchmark.factory( container ).create( new long[] { 128, 128, 128 }, new FloatType() );
+		float i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		inner = Intervals.expand( img, -10 );
+		outer = Intervals.expand( img, 10 );
+	}
+
+	private static double sum( final RandomAccessibleInterval< FloatType > view )
+	{
+		double sum = 0;
+		for ( final FloatType t : Views.iterable( view ) )
+			sum += t.get();
+		return sum;
+	}
+
+	private static double sumFlat( final RandomAccessibleInterval< FloatType > view )
+	{
+		double sum = 0;
+		for ( final FloatType t : Views.flatIterable( view ) )
+			sum += t.get();
+		return sum;
+	}
+
+	@Benchmark
+	public double interval()
+	{
+		return sum( Views.interval( img, inner ) );
+	}
+
+	@Benchmark
+	public double rotate()
+	{
+		return sumFlat( Views.rotate( img, 0, 1 ) );
+	}
+
+	@Benchmark
+	public double extendMirror()
+	{
+		return sumFlat( Views.interval( Views.extendMirrorSingle( img ), outer ) );
+	}
+
+	@Benchmark
+	public double extendZero()
+	{
+		return sumFlat( Views.interval( Views.extendZero( img ), outer ) );
+	}
+
+	@Benchmark
+	public double subsample()
+	{
+		return sumFlat( Views.subsample( img, 3 ) );
+	}
+
+	@Benchmark
+	public double hyperSlice()
+	{
+		return sumFlat( Views.hyperSlice( img, 2, 64 ) );
+	}
+}
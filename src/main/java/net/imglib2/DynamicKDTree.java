@@ -0,0 +1,473 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import net.imglib2.util.KthElement;
+
+/**
+ * A kd-tree that supports inserting, removing, and moving points after
+ * construction.
+ * <p>
+ * Each point is represented by an {@link Entry}, which is returned by
+ * {@link #insert(RealLocalizable, Object)} and used to
+ * {@link #remove(Entry)} or {@link #move(Entry, RealLocalizable)} it later.
+ * The tree is kept balanced like a scapegoat tree: When an insertion makes
+ * the tree too deep, the smallest unbalanced subtree on the path to the new
+ * node is rebuilt. Removed nodes are only marked and skipped by searches. The
+ * whole tree is rebuilt when more than half of its nodes are removed.
+ * </p>
+ * <p>
+ * The tree is not thread-safe. Searches must not run concurrently with
+ * modifications.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * A subtree is rebuilt if one of its children contains more than this
+	 * fraction of its nodes.
+	 */
+	private static final double ALPHA = 0.7;
+
+	private static final double LOG_INV_ALPHA = Math.log( 1 / ALPHA );
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	protected Node< T > root;
+
+	/**
+	 * number of nodes in the tree, including removed nodes.
+	 */
+	protected int numNodes;
+
+	/**
+	 * number of removed nodes in the tree.
+	 */
+	protected int numRemoved;
+
+	/**
+	 * A point in the tree, with a value.
+	 */
+	public static final class Entry< T > extends AbstractRealLocalizable implements Sampler< T >
+	{
+		private T value;
+
+		/**
+		 * the node that currently represents this entry, or {@code null} if it
+		 * was removed from the tree.
+		 */
+		private Node< T > node;
+
+		Entry( final RealLocalizable position, final T value )
+		{
+			super( position.numDimensions() );
+			position.localize( this.position );
+			this.value = value;
+		}
+
+		@Override
+		public T get()
+		{
+			return value;
+		}
+
+		public void set( final T value )
+		{
+			this.value = value;
+		}
+
+		/**
+		 * Returns {@code this}. Entries are not copied, because they are
+		 * identified by reference.
+		 */
+		@Override
+		public Entry< T > copy()
+		{
+			return this;
+		}
+
+		/**
+		 * @return whether this entry is (still) in the tree.
+		 */
+		public boolean isInTree()
+		{
+			return node != null;
+		}
+
+		double getPosition( final int d )
+		{
+			return position[ d ];
+		}
+
+		/**
+		 * Compute the squared distance from p to this entry.
+		 */
+		public double squDistanceTo( final double[] p )
+		{
+			double sum = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double diff = position[ d ] - p[ d ];
+				sum += diff * diff;
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * A node of the tree. All nodes x in the left subtree have
+	 * {@code x[splitDimension] <= splitCoordinate}, all nodes in the right
+	 * subtree have {@code x[splitDimension] >= splitCoordinate}.
+	 */
+	public static final class Node< T >
+	{
+		private final Entry< T > entry;
+
+		private final int splitDimension;
+
+		private final double splitCoordinate;
+
+		private Node< T > left;
+
+		private Node< T > right;
+
+		/**
+		 * number of nodes in the subtree, including removed nodes.
+		 */
+		private int size;
+
+		Node( final Entry< T > entry, final int splitDimension )
+		{
+			this.entry = entry;
+			this.splitDimension = splitDimension;
+			this.splitCoordinate = entry.getPosition( splitDimension );
+			this.size = 1;
+			entry.node = this;
+		}
+
+		/**
+		 * @return the entry of this node.
+		 */
+		public Entry< T > getEntry()
+		{
+			return entry;
+		}
+
+		/**
+		 * @return whether this node was removed. The entry of a removed node
+		 *         must not be used in search results.
+		 */
+		public boolean isRemoved()
+		{
+			return entry.node != this;
+		}
+
+		public int getSplitDimension()
+		{
+			return splitDimension;
+		}
+
+		public double getSplitCoordinate()
+		{
+			return splitCoordinate;
+		}
+
+		public Node< T > getLeft()
+		{
+			return left;
+		}
+
+		public Node< T > getRight()
+		{
+			return right;
+		}
+	}
+
+	/**
+	 * Construct an empty tree.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions
+	 */
+	public DynamicKDTree( final int numDimensions )
+	{
+		this.n = numDimensions;
+	}
+
+	/**
+	 * Insert all elements of the given lists, and rebuild the tree to be
+	 * balanced.
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @return the entries of the values, in the same order.
+	 */
+	public < L extends RealLocalizable > List< Entry< T > > insertAll( final List< T > values, final List< L > positions )
+	{
+		assert values.size() == positions.size();
+		final ArrayList< Entry< T > > entries = new ArrayList< Entry< T > >( values.size() );
+		for ( int i = 0; i < values.size(); ++i )
+		{
+			final L position = positions.get( i );
+			if ( position.numDimensions() != n )
+				throw new IllegalArgumentException( "Expected " + n + " dimensions, got " + position.numDimensions() );
+			entries.add( new Entry< T >( position, values.get( i ) ) );
+		}
+
+		final ArrayList< Node< T > > nodes = new ArrayList< Node< T > >( numNodes - numRemoved + entries.size() );
+		collect( root, nodes );
+		for ( final Entry< T > entry : entries )
+			nodes.add( new Node< T >( entry, 0 ) );
+		root = build( nodes, 0, nodes.size() - 1, 0 );
+		numNodes = nodes.size();
+		numRemoved = 0;
+		return entries;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of entries in the tree.
+	 */
+	public int size()
+	{
+		return numNodes - numRemoved;
+	}
+
+	/**
+	 * Get the root node, or {@code null} if the tree is empty.
+	 */
+	public Node< T > getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * Insert a value at the given position.
+	 *
+	 * @return the entry of the value in the tree
+	 */
+	public Entry< T > insert( final RealLocalizable position, final T value )
+	{
+		if ( position.numDimensions() != n )
+			throw new IllegalArgumentException( "Expected " + n + " dimensions, got " + position.numDimensions() );
+		final Entry< T > entry = new Entry< T >( position, value );
+		insert( entry );
+		return entry;
+	}
+
+	/**
+	 * Remove an entry from the tree.
+	 *
+	 * @return {@code false} if the entry was not in the tree.
+	 */
+	public boolean remove( final Entry< T > entry )
+	{
+		if ( entry.node == null )
+			return false;
+		entry.node = null;
+		++numRemoved;
+		if ( numRemoved > numNodes / 2 )
+			rebuild();
+		return true;
+	}
+
+	/**
+	 * Move an entry to a new position.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the entry is not in the tree.
+	 */
+	public void move( final Entry< T > entry, final RealLocalizable position )
+	{
+		if ( entry.node == null )
+			throw new IllegalArgumentException( "Entry is not in the tree" );
+		if ( position.numDimensions() != n )
+			throw new IllegalArgumentException( "Expected " + n + " dimensions, got " + position.numDimensions() );
+		entry.node = null;
+		++numRemoved;
+		position.localize( entry.position );
+		insert( entry );
+		if ( numRemoved > numNodes / 2 )
+			rebuild();
+	}
+
+	/**
+	 * Rebuild the whole tree, dropping removed nodes.
+	 */
+	public void rebuild()
+	{
+		final ArrayList< Node< T > > nodes = new ArrayList< Node< T > >( numNodes - numRemoved );
+		collect( root, nodes );
+		root = build( nodes, 0, nodes.size() - 1, 0 );
+		numNodes = nodes.size();
+		numRemoved = 0;
+	}
+
+	private void insert( final Entry< T > entry )
+	{
+		if ( root == null )
+		{
+			root = new Node< T >( entry, 0 );
+			numNodes = 1;
+			return;
+		}
+
+		// descend to the parent of the new node, remembering the path
+		final ArrayList< Node< T > > path = new ArrayList< Node< T > >();
+		Node< T > current = root;
+		Node< T > parent;
+		boolean left;
+		do
+		{
+			parent = current;
+			path.add( parent );
+			++parent.size;
+			left = entry.getPosition( parent.splitDimension ) < parent.splitCoordinate;
+			current = left ? parent.left : parent.right;
+		}
+		while ( current != null );
+
+		final Node< T > node = new Node< T >( entry, parent.splitDimension + 1 == n ? 0 : parent.splitDimension + 1 );
+		if ( left )
+			parent.left = node;
+		else
+			parent.right = node;
+		++numNodes;
+
+		// rebuild the lowest unbalanced ancestor if the new node is too deep
+		final int depth = path.size();
+		if ( depth > Math.log( numNodes ) / LOG_INV_ALPHA + 1 )
+		{
+			for ( int i = depth - 1; i >= 0; --i )
+			{
+				final Node< T > scapegoat = path.get( i );
+				if ( size( scapegoat.left ) > ALPHA * scapegoat.size || size( scapegoat.right ) > ALPHA * scapegoat.size )
+				{
+					final ArrayList< Node< T > > nodes = new ArrayList< Node< T > >( scapegoat.size );
+					collect( scapegoat, nodes );
+					final int removed = scapegoat.size - nodes.size();
+					final Node< T > subtree = build( nodes, 0, nodes.size() - 1, scapegoat.splitDimension );
+					if ( i == 0 )
+						root = subtree;
+					else
+					{
+						final Node< T > p = path.get( i - 1 );
+						if ( p.left == scapegoat )
+							p.left = subtree;
+						else
+							p.right = subtree;
+					}
+					for ( int j = 0; j < i; ++j )
+						path.get( j ).size -= removed;
+					numNodes -= removed;
+					numRemoved -= removed;
+					break;
+				}
+			}
+		}
+	}
+
+	private static int size( final Node< ? > node )
+	{
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Add the nodes of the subtree that were not removed to the list.
+	 */
+	private static < T > void collect( final Node< T > node, final List< Node< T > > nodes )
+	{
+		if ( node == null )
+			return;
+		collect( node.left, nodes );
+		if ( !node.isRemoved() )
+			nodes.add( node );
+		collect( node.right, nodes );
+	}
+
+	/**
+	 * Build a balanced subtree of fresh nodes for the entries of the sublist
+	 * of nodes between indices i and j (inclusive), split at the median along
+	 * dimension d, like {@link KDTree}.
+	 */
+	private Node< T > build( final List< Node< T > > nodes, final int i, final int j, final int d )
+	{
+		if ( j < i )
+			return null;
+		final int k = i + ( j - i ) / 2;
+		if ( j > i )
+			KthElement.kthElement( i, j, k, nodes, new NodeComparator< T >( d ) );
+
+		final Node< T > node = new Node< T >( nodes.get( k ).entry, d );
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		node.left = build( nodes, i, k - 1, dChild );
+		node.right = build( nodes, k + 1, j, dChild );
+		node.size = j - i + 1;
+		return node;
+	}
+
+	private static final class NodeComparator< T > implements Comparator< Node< T > >
+	{
+		private final int d;
+
+		NodeComparator( final int d )
+		{
+			this.d = d;
+		}
+
+		@Override
+		public int compare( final Node< T > o1, final Node< T > o2 )
+		{
+			return Double.compare( o1.entry.getPosition( d ), o2.entry.getPosition( d ) );
+		}
+	}
+}
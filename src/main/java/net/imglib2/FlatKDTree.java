@@ -0,0 +1,778 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * KDTree to access values at RealLocalizable positions, stored as flat
+ * primitive arrays instead of a tree of {@link KDTreeNode} objects.
+ * <p>
+ * The tree is implicit in the order of the nodes: The subtree containing nodes
+ * {@code i} to {@code j} (inclusive) has the root node
+ * {@code k = i + (j - i) / 2}, which is the median along the split dimension.
+ * Its left subtree contains nodes {@code i} to {@code k - 1}, its right subtree
+ * contains nodes {@code k + 1} to {@code j}. The whole tree contains nodes
+ * {@code 0} to {@code size() - 1}. Nodes at depth {@code t} split the space
+ * along dimension {@code t % n}.
+ * </p>
+ * <p>
+ * The coordinates of all nodes are stored in one {@code double[]} (node
+ * {@code k} at {@code [k * n, (k + 1) * n)}), and the values in a list in the
+ * same order. For each node, the index of its value in the list that the tree
+ * was built from is kept in an {@code int[]}.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of all nodes, in node order.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * index of the value of each node in the list the tree was built from.
+	 */
+	final protected int[] indices;
+
+	/**
+	 * values of all nodes, in node order.
+	 */
+	final protected List< T > values;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Subtrees of at most this many nodes are constructed sequentially when
+	 * constructing in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list, constructing
+	 * independent subtrees in parallel on the given {@link ForkJoinPool}. The
+	 * resulting tree is the same as constructed by
+	 * {@link #FlatKDTree(List, List)}.
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param pool
+	 *            the pool to construct subtrees on, or {@code null} to
+	 *            construct sequentially.
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions, final ForkJoinPool pool )
+	{
+		this( positions.get( 0 ).numDimensions(), flatten( positions ), values, null, null, pool );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the given flattened coordinates.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions
+	 * @param positions
+	 *            coordinates of the values. The coordinates of value
+	 *            {@code i} are at {@code [i * numDimensions, (i + 1) * numDimensions)}.
+	 *            The array is not modified.
+	 * @param values
+	 *            a list of values
+	 */
+	public FlatKDTree( final int numDimensions, final double[] positions, final List< T > values )
+	{
+		this( numDimensions, positions, values, null );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the given flattened coordinates, constructing
+	 * independent subtrees in parallel on the given {@link ForkJoinPool}. The
+	 * resulting tree is the same as constructed by
+	 * {@link #FlatKDTree(int, double[], List)}.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions
+	 * @param positions
+	 *            coordinates of the values. The coordinates of value
+	 *            {@code i} are at {@code [i * numDimensions, (i + 1) * numDimensions)}.
+	 *            The array is not modified.
+	 * @param values
+	 *            a list of values
+	 * @param pool
+	 *            the pool to construct subtrees on, or {@code null} to
+	 *            construct sequentially.
+	 */
+	public FlatKDTree( final int numDimensions, final double[] positions, final List< T > values, final ForkJoinPool pool )
+	{
+		this( numDimensions, positions, values, null, null, pool );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements of the given
+	 * {@link IterableRealInterval}.
+	 *
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 */
+	public FlatKDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval, null );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements of the given
+	 * {@link IterableRealInterval}, constructing independent subtrees in
+	 * parallel on the given {@link ForkJoinPool}. The resulting tree is the
+	 * same as constructed by {@link #FlatKDTree(IterableRealInterval)}.
+	 *
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 * @param pool
+	 *            the pool to construct subtrees on, or {@code null} to
+	 *            construct sequentially.
+	 */
+	public FlatKDTree( final IterableRealInterval< T > interval, final ForkJoinPool pool )
+	{
+		this( interval.numDimensions(), flatten( interval ), samplerValues( interval ), interval, interval, pool );
+	}
+
+	private FlatKDTree( final int numDimensions, final double[] coordinates, final List< T > values, final RealInterval min, final RealInterval max, final ForkJoinPool pool )
+	{
+		final int size = values.size();
+		if ( coordinates.length != ( long ) size * numDimensions )
+			throw new IllegalArgumentException( "Expected " + ( ( long ) size * numDimensions ) + " coordinates for " + size + " values, got " + coordinates.length );
+		this.n = numDimensions;
+		this.size = size;
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		if ( min != null )
+		{
+			min.realMin( this.min );
+			max.realMax( this.max );
+		}
+		else
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				this.min[ d ] = Double.MAX_VALUE;
+				this.max[ d ] = -Double.MAX_VALUE;
+			}
+			for ( int i = 0, o = 0; i < size; ++i )
+				for ( int d = 0; d < n; ++d, ++o )
+				{
+					final double x = coordinates[ o ];
+					if ( x < this.min[ d ] )
+						this.min[ d ] = x;
+					if ( x > this.max[ d ] )
+						this.max[ d ] = x;
+				}
+		}
+
+		this.indices = new int[ size ];
+		for ( int k = 0; k < size; ++k )
+			indices[ k ] = k;
+		if ( pool != null )
+			pool.invoke( new MakeNodesAction( coordinates, 0, size - 1, 0 ) );
+		else
+			makeNodes( coordinates, 0, size - 1, 0 );
+
+		this.positions = new double[ coordinates.length ];
+		for ( int k = 0; k < size; ++k )
+			System.arraycopy( coordinates, indices[ k ] * n, positions, k * n, n );
+		this.values = permute( values, indices );
+	}
+
+	/**
+	 * @return a list with element {@code values.get(indices[k])} at index
+	 *         {@code k}.
+	 */
+	private static < T > List< T > permute( final List< T > values, final int[] indices )
+	{
+		if ( values instanceof SamplerList )
+			return new SamplerList< T >( permute( ( ( SamplerList< T > ) values ).samplers, indices ) );
+
+		final List< T > list = values instanceof java.util.RandomAccess ? values : new ArrayList< T >( values );
+		final ArrayList< T > permuted = new ArrayList< T >( indices.length );
+		for ( final int index : indices )
+			permuted.add( list.get( index ) );
+		return permuted;
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] coordinates = new double[ checkedLength( positions.size(), n ) ];
+		final double[] position = new double[ n ];
+		int o = 0;
+		for ( final L p : positions )
+		{
+			if ( p.numDimensions() != n )
+				throw new IllegalArgumentException( "All positions must have " + n + " dimensions" );
+			p.localize( position );
+			System.arraycopy( position, 0, coordinates, o, n );
+			o += n;
+		}
+		return coordinates;
+	}
+
+	private static double[] flatten( final IterableRealInterval< ? > interval )
+	{
+		final int n = interval.numDimensions();
+		final double[] coordinates = new double[ checkedLength( interval.size(), n ) ];
+		final double[] position = new double[ n ];
+		final RealCursor< ? > cursor = interval.localizingCursor();
+		for ( int o = 0; cursor.hasNext(); o += n )
+		{
+			cursor.fwd();
+			cursor.localize( position );
+			System.arraycopy( position, 0, coordinates, o, n );
+		}
+		return coordinates;
+	}
+
+	private static int checkedLength( final long size, final int n )
+	{
+		if ( size * n > Integer.MAX_VALUE - 8 )
+			throw new IllegalArgumentException( "Too many coordinates for a FlatKDTree: " + size + " x " + n );
+		return ( int ) ( size * n );
+	}
+
+	/**
+	 * Values of an {@link IterableRealInterval}, provided by copies of its
+	 * cursor.
+	 */
+	private static < T > List< T > samplerValues( final IterableRealInterval< T > interval )
+	{
+		final ArrayList< Sampler< T > > samplers = new ArrayList< Sampler< T > >( ( int ) interval.size() );
+		final RealCursor< T > cursor = interval.cursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			samplers.add( cursor.copyCursor() );
+		}
+		return new SamplerList< T >( samplers );
+	}
+
+	private static final class SamplerList< T > extends AbstractList< T > implements java.util.RandomAccess
+	{
+		private final List< Sampler< T > > samplers;
+
+		SamplerList( final List< Sampler< T > > samplers )
+		{
+			this.samplers = samplers;
+		}
+
+		@Override
+		public T get( final int index )
+		{
+			return samplers.get( index ).get();
+		}
+
+		@Override
+		public int size()
+		{
+			return samplers.size();
+		}
+	}
+
+	/**
+	 * Construct the subtree of nodes i to j (inclusive), by moving the median
+	 * with respect to coordinates in dimension d to the middle, and
+	 * recursively constructing the left and right subtrees.
+	 *
+	 * @param coordinates
+	 *            coordinates of the values, in original order
+	 * @param i
+	 *            first node of the subtree
+	 * @param j
+	 *            last node of the subtree
+	 * @param d
+	 *            dimension along which to split
+	 */
+	protected void makeNodes( final double[] coordinates, final int i, final int j, final int d )
+	{
+		if ( j > i )
+		{
+			final int k = i + ( j - i ) / 2;
+			kthElement( i, j, k, coordinates, d );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			makeNodes( coordinates, i, k - 1, dChild );
+			makeNodes( coordinates, k + 1, j, dChild );
+		}
+	}
+
+	/**
+	 * Constructs the same subtree as
+	 * {@link FlatKDTree#makeNodes(double[], int, int, int)}, forking the
+	 * construction of the left subtree while there are more than
+	 * {@link FlatKDTree#PARALLEL_THRESHOLD} nodes. The subtrees operate on
+	 * disjoint ranges of {@link FlatKDTree#indices}.
+	 */
+	private final class MakeNodesAction extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coordinates;
+
+		private final int i;
+
+		private final int j;
+
+		private final int d;
+
+		MakeNodesAction( final double[] coordinates, final int i, final int j, final int d )
+		{
+			this.coordinates = coordinates;
+			this.i = i;
+			this.j = j;
+			this.d = d;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+			{
+				makeNodes( coordinates, i, j, d );
+				return;
+			}
+
+			final int k = i + ( j - i ) / 2;
+			kthElement( i, j, k, coordinates, d );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			invokeAll(
+					new MakeNodesAction( coordinates, i, k - 1, dChild ),
+					new MakeNodesAction( coordinates, k + 1, j, dChild ) );
+		}
+	}
+
+	/**
+	 * Partially sort {@link #indices} {@code i} to {@code j} (inclusive), such
+	 * that the index of the k-th smallest coordinate in dimension d is at
+	 * position k, smaller ones before and larger ones after it.
+	 */
+	private void kthElement( int i, int j, final int k, final double[] coordinates, final int d )
+	{
+		while ( true )
+		{
+			final int pivotpos = partitionSubList( i, j, coordinates, d );
+			if ( pivotpos > k )
+				j = pivotpos - 1;
+			else if ( pivotpos < k )
+				i = pivotpos + 1;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Partition {@link #indices} {@code i} to {@code j} (inclusive) around
+	 * the middle element, comparing coordinates in dimension d.
+	 *
+	 * @return the final position of the pivot.
+	 */
+	private int partitionSubList( int i, int j, final double[] coordinates, final int d )
+	{
+		// use the middle element as pivot, to avoid quadratic running time for
+		// sorted input
+		swap( ( i + j ) >>> 1, j );
+		final int pivotIndex = j;
+		final int pivotValue = indices[ j-- ];
+		final double pivot = coordinates[ pivotValue * n + d ];
+
+		A: while ( true )
+		{
+			// move i forward while < pivot (and not at j)
+			while ( i <= j && coordinates[ indices[ i ] * n + d ] < pivot )
+				++i;
+			// now [i] is the place where the next value < pivot is to be
+			// inserted
+
+			if ( i > j )
+				break;
+
+			// move j backward while >= pivot (and not at i)
+			while ( true )
+			{
+				if ( coordinates[ indices[ j ] * n + d ] < pivot )
+				{
+					swap( i, j );
+					++i;
+					--j;
+					break;
+				}
+				else if ( j == i )
+				{
+					break A;
+				}
+				--j;
+			}
+		}
+
+		// we are done. put the pivot element here.
+		if ( i != pivotIndex )
+		{
+			indices[ pivotIndex ] = indices[ i ];
+			indices[ i ] = pivotValue;
+		}
+		return i;
+	}
+
+	private void swap( final int i, final int j )
+	{
+		final int tmp = indices[ i ];
+		indices[ i ] = indices[ j ];
+		indices[ j ] = tmp;
+	}
+
+	/**
+	 * Get the coordinates of all nodes, in node order. The coordinates of node
+	 * {@code k} are at {@code [k * n, (k + 1) * n)}. The array must not be
+	 * modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Get the index of the value of the given node in the list of values (or
+	 * the iteration order of the {@link IterableRealInterval}) that the tree
+	 * was constructed from.
+	 */
+	public int getIndex( final int node )
+	{
+		return indices[ node ];
+	}
+
+	/**
+	 * Get the value of the given node.
+	 */
+	public T getValue( final int node )
+	{
+		return values.get( node );
+	}
+
+	/**
+	 * Get the coordinate of the given node in dimension d.
+	 */
+	public double getDoublePosition( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * Compute the squared distance from p to the given node.
+	 */
+	public double squDistance( final int node, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = node * n; d < n; ++d, ++o )
+		{
+			final double diff = positions[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	/**
+	 * A reference to a node of the tree, providing its coordinates and value.
+	 */
+	public class Node implements RealLocalizable, Sampler< T >
+	{
+		protected int node;
+
+		public Node( final int node )
+		{
+			this.node = node;
+		}
+
+		/**
+		 * Get the node this refers to.
+		 */
+		public int getNode()
+		{
+			return node;
+		}
+
+		/**
+		 * Make this refer to the given node.
+		 */
+		public void setNode( final int node )
+		{
+			this.node = node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0, o = node * n; d < n; ++d, ++o )
+				position[ d ] = ( float ) positions[ o ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( node );
+		}
+
+		@Override
+		public Node copy()
+		{
+			return new Node( node );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + node + " | " + get();
+		}
+	}
+
+	/**
+	 * Iterates the nodes in node order.
+	 */
+	public final class FlatKDTreeCursor extends Node implements RealCursor< T >
+	{
+		public FlatKDTreeCursor()
+		{
+			super( -1 );
+		}
+
+		protected FlatKDTreeCursor( final FlatKDTreeCursor c )
+		{
+			super( c.node );
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			return new FlatKDTreeCursor( this );
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			node += steps;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++node;
+		}
+
+		@Override
+		public void reset()
+		{
+			node = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return node < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return getValue( 0 );
+	}
+}
@@ -34,6 +34,12 @@
 
 package net.imglib2;
 
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import net.imglib2.iterator.CursorSpliterator;
+
 /**
  * An {@link IterableRealInterval} whose elements are located at integer
  * coordinates.
@@ -49,4 +55,45 @@ public interface IterableInterval< T > extends IterableRealInterval< T >, Interv
 
 	@Override
 	public Cursor< T > localizingCursor();
+
+	/**
+	 * Create a {@link Spliterator} over the elements of this
+	 * {@link IterableInterval}, that splits into ranges of the iteration order.
+	 * Each split iterates its range with a separate copy of {@link #cursor()}.
+	 * <p>
+	 * Elements are (proxy) objects reused by the underlying cursor, i.e., they
+	 * are only valid inside the action they are passed to.
+	 * </p>
+	 */
+	@Override
+	public default Spliterator< T > spliterator()
+	{
+		return new CursorSpliterator<>( this );
+	}
+
+	/**
+	 * @return a sequential {@link Stream} over the elements of this
+	 *         {@link IterableInterval}.
+	 * @see #spliterator()
+	 */
+	public default Stream< T > stream()
+	{
+		return StreamSupport.stream( spliterator(), false );
+	}
+
+	/**
+	 * Get a parallel {@link Stream} over the elements of this
+	 * {@link IterableInterval}, e.g., to apply a per-pixel operation on all
+	 * cores:
+	 *
+	 * <pre>{@code
+	 * img.parallelStream().forEach( t -> t.mul( 2 ) );
+	 * }</pre>
+	 *
+	 * @see #spliterator()
+	 */
+	public default Stream< T > parallelStream()
+	{
+		return StreamSupport.stream( spliterator(), true );
+	}
 }
@@ -39,6 +39,8 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import net.imglib2.util.KthElement;
 
@@ -74,6 +76,12 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 */
 	final protected double[] max;
 
+	/**
+	 * Subtrees of at most this many nodes are constructed sequentially when
+	 * constructing in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
 	/**
 	 * A KDTreeNode that stores it's value as a reference.
 	 */
@@ -188,6 +196,35 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            a list of positions corresponding to the values
 	 */
 	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null );
+	}
+
+	/**
+	 * Construct a KDTree from the elements in the given list, constructing
+	 * independent subtrees in parallel on the given {@link ForkJoinPool}. The
+	 * resulting tree is the same as constructed by
+	 * {@link #KDTree(List, List)}.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * <p>
+	 * Construction is parallel only if {@code positions} is a
+	 * {@link java.util.RandomAccess} list.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param pool
+	 *            the pool to construct subtrees on, or {@code null} to
+	 *            construct sequentially.
+	 */
+	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions, final ForkJoinPool pool )
 	{
 		assert values.size() == positions.size();
 
@@ -217,7 +254,20 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			}
 		}
 
-		if ( values == positions )
+		if ( pool != null && positions instanceof java.util.RandomAccess )
+		{
+			if ( values == positions )
+				root = pool.invoke( new MakeNodeTask< L >( positions, 0, positions.size() - 1, 0, null, null ) );
+			else
+			{
+				final int[] permutation = new int[ positions.size() ];
+				for ( int k = 0; k < permutation.length; ++k )
+					permutation[ k ] = k;
+
+				root = pool.invoke( new MakeNodeTask< L >( positions, 0, positions.size() - 1, 0, values, permutation ) );
+			}
+		}
+		else if ( values == positions )
 		{
 			if ( positions instanceof java.util.RandomAccess )
 				root = makeNode( positions, 0, positions.size() - 1, 0 );
@@ -338,6 +388,64 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 		}
 	}
 
+	/**
+	 * Constructs the same subtree as
+	 * {@link KDTree#makeNode(List, int, int, int, List, int[])} (or
+	 * {@link KDTree#makeNode(List, int, int, int)} if {@code values == null}),
+	 * forking the construction of the left subtree while the sublist has more
+	 * than {@link KDTree#PARALLEL_THRESHOLD} elements. The subtrees operate on
+	 * disjoint sublists of positions and permutation.
+	 */
+	private final class MakeNodeTask< L extends RealLocalizable > extends RecursiveTask< ValueNode< T > >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List< L > positions;
+
+		private final int i;
+
+		private final int j;
+
+		private final int d;
+
+		private final List< T > values;
+
+		private final int[] permutation;
+
+		MakeNodeTask( final List< L > positions, final int i, final int j, final int d, final List< T > values, final int[] permutation )
+		{
+			this.positions = positions;
+			this.i = i;
+			this.j = j;
+			this.d = d;
+			this.values = values;
+			this.permutation = permutation;
+		}
+
+		@SuppressWarnings( "unchecked" )
+		@Override
+		protected ValueNode< T > compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+				return values == null ? makeNode( positions, i, j, d ) : makeNode( positions, i, j, d, values, permutation );
+
+			final int k = i + ( j - i ) / 2;
+			if ( values == null )
+				KthElement.kthElement( i, j, k, positions, new DimComparator< L >( d ) );
+			else
+				KthElement.kthElement( i, j, k, positions, permutation, new DimComparator< L >( d ) );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			final MakeNodeTask< L > leftTask = new MakeNodeTask< L >( positions, i, k - 1, dChild, values, permutation );
+			leftTask.fork();
+			final ValueNode< T > right = new MakeNodeTask< L >( positions, k + 1, j, dChild, values, permutation ).compute();
+			final ValueNode< T > left = leftTask.join();
+
+			final T value = values == null ? ( T ) positions.get( k ) : values.get( permutation[ k ] );
+			return new ValueNode< T >( value, positions.get( k ), d, left, right );
+		}
+	}
+
 	/**
 	 * Construct the tree by recursively adding nodes. The sublist of positions
 	 * between iterators first and last is split at the median element with
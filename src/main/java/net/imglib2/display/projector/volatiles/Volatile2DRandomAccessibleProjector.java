@@ -87,13 +87,16 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		final IterableInterval< A > srcIterable = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
 		final Cursor< B > targetCursor = target.localizingCursor();
 
+		boolean v = true;
 		if ( target.iterationOrder().equals( srcIterable.iterationOrder() ) )
 		{
 			// use cursors
 			final Cursor< A > sourceCursor = srcIterable.cursor();
 			while ( targetCursor.hasNext() )
 			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
+				final A a = sourceCursor.next();
+				converter.convert( a, targetCursor.next() );
+				v &= a.isValid();
 			}
 		}
 		else
@@ -106,8 +109,11 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
 				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
 
-				converter.convert( sourceRandomAccess.get(), b );
+				final A a = sourceRandomAccess.get();
+				converter.convert( a, b );
+				v &= a.isValid();
 			}
 		}
+		valid = v;
 	}
 }
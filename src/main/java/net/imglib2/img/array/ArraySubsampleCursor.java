@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import net.imglib2.AbstractCursorInt;
+import net.imglib2.Cursor;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link Cursor} over every <em>s<sub>d</sub></em><sup>th</sup> pixel of an
+ * {@link ArrayImg}, in flat order, starting at the origin.
+ * <p>
+ * The cursor steps the linear index by a fixed stride per dimension instead
+ * of positioning a {@link net.imglib2.RandomAccess} for each sample. Positions
+ * are reported in subsampled coordinates.
+ * </p>
+ */
+public class ArraySubsampleCursor< T extends NativeType< T > > extends AbstractCursorInt< T >
+{
+	protected final T type;
+
+	protected final ArrayImg< T, ? > img;
+
+	/**
+	 * number of samples per dimension.
+	 */
+	private final int[] dimensions;
+
+	/**
+	 * index increment for one sample along each dimension.
+	 */
+	private final int[] strides;
+
+	/**
+	 * index of the last sample.
+	 */
+	private final int lastIndex;
+
+	/**
+	 * current position in subsampled coordinates.
+	 */
+	private final int[] position;
+
+	protected ArraySubsampleCursor( final ArraySubsampleCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		img = cursor.img;
+		type = img.createLinkedType();
+		dimensions = cursor.dimensions;
+		strides = cursor.strides;
+		lastIndex = cursor.lastIndex;
+		position = cursor.position.clone();
+
+		type.updateIndex( cursor.type.getIndex() );
+		type.updateContainer( this );
+	}
+
+	public ArraySubsampleCursor( final ArrayImg< T, ? > img, final long... steps )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		type = img.createLinkedType();
+		dimensions = new int[ n ];
+		strides = new int[ n ];
+		position = new int[ n ];
+
+		int stride = 1;
+		int last = 0;
+		boolean empty = false;
+		for ( int d = 0; d < n; ++d )
+		{
+			dimensions[ d ] = ( int ) ( img.dimension( d ) / steps[ d ] );
+			strides[ d ] = stride * ( int ) steps[ d ];
+			stride *= ( int ) img.dimension( d );
+			last += ( dimensions[ d ] - 1 ) * strides[ d ];
+			empty |= dimensions[ d ] == 0;
+		}
+		lastIndex = empty ? Integer.MIN_VALUE : last;
+
+		reset();
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public ArraySubsampleCursor< T > copy()
+	{
+		return new ArraySubsampleCursor<>( this );
+	}
+
+	@Override
+	public ArraySubsampleCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return type.getIndex() < lastIndex;
+	}
+
+	@Override
+	public void fwd()
+	{
+		int i = type.getIndex() + strides[ 0 ];
+		if ( ++position[ 0 ] == dimensions[ 0 ] )
+		{
+			// carry into the next dimensions
+			for ( int d = 0; d < n - 1; ++d )
+			{
+				if ( position[ d ] < dimensions[ d ] )
+					break;
+				i -= position[ d ] * strides[ d ];
+				position[ d ] = 0;
+				i += strides[ d + 1 ];
+				++position[ d + 1 ];
+			}
+		}
+		type.updateIndex( i );
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		long k = steps;
+		int i = type.getIndex();
+		for ( int d = 0; d < n && k > 0; ++d )
+		{
+			// move along d, carrying the remainder into the next dimension
+			final long p = position[ d ] + k;
+			final long q = d < n - 1 ? p / dimensions[ d ] : 0;
+			final int r = ( int ) ( p - q * dimensions[ d ] );
+			i += ( r - position[ d ] ) * strides[ d ];
+			position[ d ] = r;
+			k = q;
+		}
+		type.updateIndex( i );
+	}
+
+	@Override
+	public void reset()
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = 0;
+		position[ 0 ] = -1;
+		type.updateIndex( -strides[ 0 ] );
+		type.updateContainer( this );
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public void localize( final int[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			pos[ d ] = position[ d ];
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import java.util.List;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * An image stored in flat iteration order, like {@link ArrayImg}, but split
+ * into a sequence of primitive arrays ("chunks") of 2<sup>chunkShift</sup>
+ * pixels each. This lifts the limit of 2<sup>31</sup> elements of a single
+ * {@link ArrayImg} without the per-cell overhead and blocked layout of a
+ * {@link net.imglib2.img.cell.CellImg}.
+ * <p>
+ * Pixels are addressed by a {@code long} index. The chunk containing index
+ * {@code i} is {@code i >> chunkShift} and the index within that chunk is
+ * {@code i & (chunkSize - 1)}. Linked types are re-attached to a new chunk
+ * through {@link #update(Object)} whenever a cursor or random access crosses a
+ * chunk boundary, and otherwise use the usual {@code int} index of the
+ * current chunk.
+ * </p>
+ *
+ * @param <T>
+ * @param <A>
+ *            access type of the chunks
+ */
+public class ChunkedArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg< T, A >
+{
+	/**
+	 * Implemented by cursors and random accesses of a {@link ChunkedArrayImg}
+	 * to tell {@link ChunkedArrayImg#update(Object)} which chunk they are in.
+	 */
+	public interface ChunkedArraySampler
+	{
+		int getCurrentChunkIndex();
+	}
+
+	final List< A > chunks;
+
+	final int chunkShift;
+
+	final long chunkMask;
+
+	final long[] steps;
+
+	private final ChunkedArrayImgFactory< T > factory;
+
+	public ChunkedArrayImg( final List< A > chunks, final long[] dim, final Fraction entitiesPerPixel, final int chunkShift, final ChunkedArrayImgFactory< T > factory )
+	{
+		super( dim, entitiesPerPixel );
+		if ( chunks.size() != numChunks( numPixels, chunkShift ) )
+			throw new IllegalArgumentException( "Expected " + numChunks( numPixels, chunkShift ) + " chunks of 2^" + chunkShift + " pixels, got " + chunks.size() );
+		this.chunks = chunks;
+		this.chunkShift = chunkShift;
+		this.chunkMask = ( 1l << chunkShift ) - 1;
+		this.steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dim, steps );
+		this.factory = factory;
+	}
+
+	/**
+	 * @return the number of chunks of 2<sup>{@code chunkShift}</sup> pixels
+	 *         required to hold {@code numPixels} pixels.
+	 */
+	public static long numChunks( final long numPixels, final int chunkShift )
+	{
+		return ( ( numPixels - 1 ) >> chunkShift ) + 1;
+	}
+
+	/**
+	 * @return log<sub>2</sub> of the number of pixels per chunk.
+	 */
+	public int getChunkShift()
+	{
+		return chunkShift;
+	}
+
+	public int numChunks()
+	{
+		return chunks.size();
+	}
+
+	/**
+	 * Get the storage of the chunk holding the pixels with flat indices
+	 * {@code [i << chunkShift, (i + 1) << chunkShift)}. All chunks but the last
+	 * one are full.
+	 */
+	public A getChunk( final int i )
+	{
+		return chunks.get( i );
+	}
+
+	@Override
+	public A update( final Object updater )
+	{
+		return chunks.get( ( ( ChunkedArraySampler ) updater ).getCurrentChunkIndex() );
+	}
+
+	@Override
+	public ChunkedArrayCursor< T > cursor()
+	{
+		return new ChunkedArrayCursor< T >( this );
+	}
+
+	@Override
+	public ChunkedArrayLocalizingCursor< T > localizingCursor()
+	{
+		return new ChunkedArrayLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > randomAccess()
+	{
+		return new ChunkedArrayRandomAccess< T >( this );
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public ChunkedArrayImgFactory< T > factory()
+	{
+		return factory;
+	}
+
+	@Override
+	public ChunkedArrayImg< T, ? > copy()
+	{
+		final ChunkedArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+
+		final ChunkedArrayCursor< T > source = this.cursor();
+		final ChunkedArrayCursor< T > target = copy.cursor();
+
+		while ( source.hasNext() )
+			target.next().set( source.next() );
+
+		return copy;
+	}
+}
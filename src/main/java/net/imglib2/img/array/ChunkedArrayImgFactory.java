@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import java.util.ArrayList;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.AbstractImg;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link ChunkedArrayImg}s.
+ * <p>
+ * By default, chunks are as large as possible: 2<sup>30</sup> pixels, or
+ * less if the primitive array for that many pixels would exceed the maximum
+ * array length. A smaller chunk size can be given as log<sub>2</sub> of the
+ * number of pixels per chunk.
+ * </p>
+ *
+ * @param <T>
+ */
+public class ChunkedArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	/**
+	 * The largest chunk size. Linked types address pixels within a chunk by an
+	 * {@code int} index.
+	 */
+	public static final int MAX_CHUNK_SHIFT = 30;
+
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private static final int AUTO_CHUNK_SHIFT = -1;
+
+	private final int chunkShift;
+
+	public ChunkedArrayImgFactory()
+	{
+		this( AUTO_CHUNK_SHIFT );
+	}
+
+	/**
+	 * @param chunkShift
+	 *            log<sub>2</sub> of the number of pixels per chunk, in
+	 *            {@code [0, MAX_CHUNK_SHIFT]}.
+	 */
+	public ChunkedArrayImgFactory( final int chunkShift )
+	{
+		if ( chunkShift != AUTO_CHUNK_SHIFT && ( chunkShift < 0 || chunkShift > MAX_CHUNK_SHIFT ) )
+			throw new IllegalArgumentException( "chunkShift must be in [0, " + MAX_CHUNK_SHIFT + "]: " + chunkShift );
+		this.chunkShift = chunkShift;
+	}
+
+	/**
+	 * Get the chunk size for a type with the given number of entities per
+	 * pixel.
+	 *
+	 * @return log<sub>2</sub> of the number of pixels per chunk.
+	 * @throws IllegalArgumentException
+	 *             if chunks of that size do not start at entity boundaries or
+	 *             exceed the maximum array length.
+	 */
+	public int getChunkShift( final Fraction entitiesPerPixel )
+	{
+		int shift = chunkShift;
+		if ( shift == AUTO_CHUNK_SHIFT )
+		{
+			shift = MAX_CHUNK_SHIFT;
+			while ( shift > 0 && entitiesPerPixel.mulCeil( 1l << shift ) > MAX_ARRAY_LENGTH )
+				--shift;
+		}
+
+		final long chunkSize = 1l << shift;
+		if ( entitiesPerPixel.mulCeil( chunkSize ) > MAX_ARRAY_LENGTH )
+			throw new IllegalArgumentException( "Chunks of " + chunkSize + " pixels exceed the maximum array length" );
+		if ( ( chunkSize * entitiesPerPixel.getNumerator() ) % entitiesPerPixel.getDenominator() != 0 )
+			throw new IllegalArgumentException( "Chunks of " + chunkSize + " pixels do not hold an integral number of entities" );
+		return shift;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public ChunkedArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ChunkedArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new ChunkedArrayImgFactory( chunkShift );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > >
+			ChunkedArrayImg< T, A >
+			createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int shift = getChunkShift( entitiesPerPixel );
+		final long chunkSize = 1l << shift;
+		final long numPixels = AbstractImg.numElements( dimensions );
+		final long numChunks = ChunkedArrayImg.numChunks( numPixels, shift );
+		if ( numChunks > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many chunks of " + chunkSize + " pixels: " + numChunks );
+
+		final ArrayList< A > chunks = new ArrayList<>( ( int ) numChunks );
+		for ( long offset = 0; offset < numPixels; offset += chunkSize )
+			chunks.add( creator.createArray( ( int ) entitiesPerPixel.mulCeil( Math.min( chunkSize, numPixels - offset ) ) ) );
+
+		return new ChunkedArrayImg<>( chunks, dimensions, entitiesPerPixel, shift, this );
+	}
+}
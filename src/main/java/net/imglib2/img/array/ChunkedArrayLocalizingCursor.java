@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import net.imglib2.AbstractLocalizingCursor;
+import net.imglib2.img.array.ChunkedArrayImg.ChunkedArraySampler;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Localizing {@link net.imglib2.Cursor} on a {@link ChunkedArrayImg}. The
+ * position is updated in every {@link #fwd()}, which makes this cursor faster
+ * than {@link ChunkedArrayCursor} when it is localized at every pixel.
+ *
+ * @param <T>
+ */
+public final class ChunkedArrayLocalizingCursor< T extends NativeType< T > > extends AbstractLocalizingCursor< T > implements ChunkedArraySampler
+{
+	private final T type;
+
+	private final ChunkedArrayImg< T, ? > img;
+
+	private final long[] dimensions;
+
+	private final long[] max;
+
+	private final int lastChunk;
+
+	private final int lastIndexInLastChunk;
+
+	private int chunk;
+
+	private int lastIndexInChunk;
+
+	private ChunkedArrayLocalizingCursor( final ChunkedArrayLocalizingCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.img = cursor.img;
+		this.type = img.createLinkedType();
+		this.dimensions = cursor.dimensions;
+		this.max = cursor.max;
+		this.lastChunk = cursor.lastChunk;
+		this.lastIndexInLastChunk = cursor.lastIndexInLastChunk;
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = cursor.position[ d ];
+		chunk = cursor.chunk;
+		lastIndexInChunk = cursor.lastIndexInChunk;
+		if ( lastChunk >= 0 )
+			type.updateContainer( this );
+		type.updateIndex( cursor.type.getIndex() );
+	}
+
+	public ChunkedArrayLocalizingCursor( final ChunkedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		this.max = new long[ n ];
+		img.max( max );
+		this.lastChunk = img.numChunks() - 1;
+		this.lastIndexInLastChunk = ( int ) ( ( img.size() - 1 ) & img.chunkMask );
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentChunkIndex()
+	{
+		return chunk;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return type.getIndex() < lastIndexInChunk || chunk < lastChunk;
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( type.getIndex() == lastIndexInChunk )
+			moveToChunk( chunk + 1, 0 );
+		else
+			type.incIndex();
+
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( ++position[ d ] > max[ d ] )
+				position[ d ] = 0;
+			else
+				break;
+		}
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		final long index = ( ( long ) chunk << img.chunkShift ) + type.getIndex() + steps;
+		moveToChunk( ( int ) ( index >> img.chunkShift ), ( int ) ( index & img.chunkMask ) );
+		IntervalIndexer.indexToPosition( index, dimensions, position );
+	}
+
+	@Override
+	public void reset()
+	{
+		chunk = -1;
+		if ( lastChunk < 0 )
+		{
+			// empty image, there is no chunk to attach to
+			chunk = 0;
+			lastIndexInChunk = -1;
+			type.updateIndex( -1 );
+		}
+		else
+			moveToChunk( 0, -1 );
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = 0;
+		position[ 0 ] = -1;
+	}
+
+	private void moveToChunk( final int c, final int i )
+	{
+		if ( c != chunk )
+		{
+			chunk = c;
+			lastIndexInChunk = c == lastChunk ? lastIndexInLastChunk : ( int ) img.chunkMask;
+			type.updateContainer( this );
+		}
+		type.updateIndex( i );
+	}
+
+	@Override
+	public ChunkedArrayLocalizingCursor< T > copy()
+	{
+		return new ChunkedArrayLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public ChunkedArrayLocalizingCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
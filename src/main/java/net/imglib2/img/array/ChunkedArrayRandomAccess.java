@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ChunkedArrayImg.ChunkedArraySampler;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link RandomAccess} on a {@link ChunkedArrayImg}.
+ * <p>
+ * The flat {@code long} index of the current position is maintained. The
+ * linked type is re-attached only if a move crosses into a different chunk.
+ * Positions outside the image are allowed, but {@link #get()} is only valid
+ * inside it.
+ * </p>
+ *
+ * @param <T>
+ */
+public final class ChunkedArrayRandomAccess< T extends NativeType< T > > extends AbstractLocalizable implements RandomAccess< T >, ChunkedArraySampler
+{
+	private final T type;
+
+	private final ChunkedArrayImg< T, ? > img;
+
+	private final long[] steps;
+
+	private final int shift;
+
+	private final long mask;
+
+	private final int numChunks;
+
+	private long index;
+
+	private int chunk;
+
+	private ChunkedArrayRandomAccess( final ChunkedArrayRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		this.img = randomAccess.img;
+		this.type = img.createLinkedType();
+		this.steps = img.steps;
+		this.shift = img.chunkShift;
+		this.mask = img.chunkMask;
+		this.numChunks = img.numChunks();
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = randomAccess.position[ d ];
+		index = randomAccess.index;
+		chunk = randomAccess.chunk;
+		if ( numChunks > 0 )
+			type.updateContainer( this );
+		type.updateIndex( randomAccess.type.getIndex() );
+	}
+
+	public ChunkedArrayRandomAccess( final ChunkedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.steps = img.steps;
+		this.shift = img.chunkShift;
+		this.mask = img.chunkMask;
+		this.numChunks = img.numChunks();
+
+		index = 0;
+		chunk = 0;
+		if ( numChunks > 0 )
+			type.updateContainer( this );
+		type.updateIndex( 0 );
+	}
+
+	@Override
+	public int getCurrentChunkIndex()
+	{
+		return chunk;
+	}
+
+	/**
+	 * Point the linked type to {@link #index}. Positions outside of the image
+	 * keep the current chunk.
+	 */
+	private void updateType()
+	{
+		final long c = index >> shift;
+		if ( c != chunk && c >= 0 && c < numChunks )
+		{
+			chunk = ( int ) c;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( index & mask ) );
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		++position[ d ];
+		index += steps[ d ];
+		updateType();
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		--position[ d ];
+		index -= steps[ d ];
+		updateType();
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		move( ( long ) distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		position[ d ] += distance;
+		index += distance * steps[ d ];
+		updateType();
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long distance = localizable.getLongPosition( d );
+			position[ d ] += distance;
+			index += distance * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		localizable.localize( position );
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+			index += position[ d ] * steps[ d ];
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		setPosition( ( long ) pos, d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		index += ( pos - position[ d ] ) * steps[ d ];
+		position[ d ] = pos;
+		updateType();
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > copy()
+	{
+		return new ChunkedArrayRandomAccess< T >( this );
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
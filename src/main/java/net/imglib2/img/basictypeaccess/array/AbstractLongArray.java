@@ -34,14 +34,14 @@
 
 package net.imglib2.img.basictypeaccess.array;
 
-import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.AtomicLongAccess;
 
 /**
  *
  * @author Stephan Preibisch
  * @author Stephan Saalfeld
  */
-abstract public class AbstractLongArray< A extends AbstractLongArray< A > > implements LongAccess, ArrayDataAccess< A >
+abstract public class AbstractLongArray< A extends AbstractLongArray< A > > implements AtomicLongAccess, ArrayDataAccess< A >
 {
 	protected long data[];
 
@@ -67,6 +67,12 @@ abstract public class AbstractLongArray< A extends AbstractLongArray< A > > impl
 		data[ index ] = value;
 	}
 
+	@Override
+	public boolean compareAndSetValue( final int index, final long expectedValue, final long newValue )
+	{
+		return LongArrayCompareAndSet.compareAndSet( data, index, expectedValue, newValue );
+	}
+
 	@Override
 	public long[] getCurrentStorageArray()
 	{
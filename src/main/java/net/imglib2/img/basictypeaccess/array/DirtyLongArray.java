@@ -61,6 +61,13 @@ public class DirtyLongArray extends AbstractLongArray< DirtyLongArray > implemen
 		data[ index ] = value;
 	}
 
+	@Override
+	public boolean compareAndSetValue( final int index, final long expectedValue, final long newValue )
+	{
+		dirty = true;
+		return super.compareAndSetValue( index, expectedValue, newValue );
+	}
+
 	@Override
 	public DirtyLongArray createArray( final int numEntities )
 	{
@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.array;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Compare-and-set on elements of a {@code long[]}, through
+ * {@code sun.misc.Unsafe} where available. Otherwise, compare-and-set is
+ * emulated by locking the array.
+ * <p>
+ * {@code sun.misc.Unsafe} is looked up reflectively, so there is no
+ * compile-time dependency on it.
+ * </p>
+ */
+final class LongArrayCompareAndSet
+{
+	private LongArrayCompareAndSet()
+	{}
+
+	/**
+	 * {@code boolean compareAndSwapLong(Object, long, long, long)} bound to
+	 * the {@code Unsafe} instance, or null if unavailable.
+	 */
+	private static final MethodHandle compareAndSwapLong;
+
+	private static final long base;
+
+	private static final int shift;
+
+	static
+	{
+		MethodHandle cas = null;
+		long b = 0;
+		int s = 0;
+		try
+		{
+			final Class< ? > unsafeClass = Class.forName( "sun.misc.Unsafe" );
+			final Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+			theUnsafe.setAccessible( true );
+			final Object unsafe = theUnsafe.get( null );
+			b = ( ( Number ) unsafeClass.getMethod( "arrayBaseOffset", Class.class ).invoke( unsafe, long[].class ) ).longValue();
+			final int scale = ( ( Number ) unsafeClass.getMethod( "arrayIndexScale", Class.class ).invoke( unsafe, long[].class ) ).intValue();
+			s = 31 - Integer.numberOfLeadingZeros( scale );
+			cas = MethodHandles.lookup().findVirtual( unsafeClass, "compareAndSwapLong",
+					MethodType.methodType( boolean.class, Object.class, long.class, long.class, long.class ) ).bindTo( unsafe );
+		}
+		catch ( final Exception | LinkageError e )
+		{
+			cas = null;
+		}
+		compareAndSwapLong = cas;
+		base = b;
+		shift = s;
+	}
+
+	static boolean compareAndSet( final long[] data, final int index, final long expectedValue, final long newValue )
+	{
+		if ( index < 0 || index >= data.length )
+			throw new ArrayIndexOutOfBoundsException( index );
+
+		if ( compareAndSwapLong != null )
+		{
+			try
+			{
+				return ( boolean ) compareAndSwapLong.invokeExact( ( Object ) data, base + ( ( long ) index << shift ), expectedValue, newValue );
+			}
+			catch ( final RuntimeException | Error e )
+			{
+				throw e;
+			}
+			catch ( final Throwable e )
+			{
+				throw new RuntimeException( e );
+			}
+		}
+
+		synchronized ( data )
+		{
+			if ( data[ index ] != expectedValue )
+				return false;
+			data[ index ] = newValue;
+			return true;
+		}
+	}
+}
@@ -61,6 +61,13 @@ public class DirtyVolatileLongArray extends AbstractVolatileLongArray< DirtyVola
 		data[ index ] = value;
 	}
 
+	@Override
+	public boolean compareAndSetValue( final int index, final long expectedValue, final long newValue )
+	{
+		dirty = true;
+		return super.compareAndSetValue( index, expectedValue, newValue );
+	}
+
 	@Override
 	public DirtyVolatileLongArray createArray( final int numEntities, final boolean isValid )
 	{
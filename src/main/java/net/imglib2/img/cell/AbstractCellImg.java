@@ -34,12 +34,19 @@
 
 package net.imglib2.img.cell;
 
+import java.util.Spliterator;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
+import net.imglib2.iterator.CursorSpliterator;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.iteration.SubIntervalIterable;
 
 /**
  * Abstract superclass for {@link Img} types that divide their underlying data
@@ -54,6 +61,7 @@ public abstract class AbstractCellImg<
 				C extends Cell< A >,
 				I extends RandomAccessible< C > & IterableInterval< C > >
 		extends AbstractNativeImg< T, A >
+		implements SubIntervalIterable< T >
 {
 	protected final CellGrid grid;
 
@@ -110,6 +118,74 @@ public abstract class AbstractCellImg<
 		return new CellIterationOrder( this );
 	}
 
+	/**
+	 * Create a {@link Spliterator} over the pixels of this image that splits
+	 * only at cell boundaries, such that no cell is shared by two splits.
+	 */
+	@Override
+	public Spliterator< T > spliterator()
+	{
+		final long numCells = cells.size();
+		if ( numCells > Integer.MAX_VALUE - 8 )
+			return new CursorSpliterator<>( this );
+
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		final long[] cellOffsets = new long[ ( int ) numCells ];
+		long offset = 0;
+		for ( int i = 0; i < numCells; ++i )
+		{
+			cellOffsets[ i ] = offset;
+			grid.getCellDimensions( i, cellMin, cellDims );
+			long cellSize = 1;
+			for ( int d = 0; d < n; ++d )
+				cellSize *= cellDims[ d ];
+			offset += cellSize;
+		}
+		return new CursorSpliterator<>( this, cellOffsets );
+	}
+
+	/**
+	 * Every sub-interval of the image can be iterated by a
+	 * {@link CellSubIntervalCursor}, which visits only the intersecting cells.
+	 */
+	@Override
+	public boolean supportsOptimizedCursor( final Interval interval )
+	{
+		return Intervals.contains( this, interval );
+	}
+
+	/**
+	 * Sub-intervals are iterated cell by cell, which is flat iteration order
+	 * if the interval intersects only one cell in all but the last dimension.
+	 */
+	@Override
+	public Object subIntervalIterationOrder( final Interval interval )
+	{
+		for ( int d = 0; d < n - 1; ++d )
+			if ( interval.min( d ) / grid.cellDimension( d ) != interval.max( d ) / grid.cellDimension( d ) )
+				return new CellIterationOrder( this, interval );
+		return new FlatIterationOrder( interval );
+	}
+
+	@Override
+	public CellSubIntervalCursor< T, C > cursor( final Interval interval )
+	{
+		assert supportsOptimizedCursor( interval );
+
+		return new CellSubIntervalCursor<>( this, interval );
+	}
+
+	/**
+	 * {@link CellSubIntervalCursor} derives positions cheaply from its runs,
+	 * so it is also used for localizing iteration.
+	 */
+	@Override
+	public CellSubIntervalCursor< T, C > localizingCursor( final Interval interval )
+	{
+		return cursor( interval );
+	}
+
 	/**
 	 * Get the underlying image of cells which gives access to the individual
 	 * {@link Cell}s through Cursors and RandomAccesses.
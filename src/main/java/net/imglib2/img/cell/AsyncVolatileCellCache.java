@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileArrayDataAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * A non-blocking {@link Get} for {@link LazyCellImg LazyCellImgs} with
+ * {@link VolatileAccess volatile} cell data.
+ * <p>
+ * If a requested cell is available in the backing {@link BoundedCellCache}, it
+ * is returned immediately. Otherwise an invalid placeholder cell is returned,
+ * and the cell is loaded into the backing cache on a fixed number of loader
+ * threads (or through a prioritized {@link CellLoadQueue}). Subsequent
+ * requests return the placeholder until the load is complete, and the valid
+ * cell afterwards. Renderers (e.g.,
+ * {@link net.imglib2.display.projector.volatiles.Volatile2DRandomAccessibleProjector})
+ * can thus draw what is available and repaint when notified through a
+ * {@link LoadListener}.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying volatile access type
+ */
+public class AsyncVolatileCellCache< A extends VolatileAccess > implements Get< Cell< A > >
+{
+	/**
+	 * Notified on a loader thread whenever a cell has finished loading.
+	 */
+	@FunctionalInterface
+	public interface LoadListener
+	{
+		void cellLoaded( long index );
+	}
+
+	private final BoundedCellCache< A > cache;
+
+	private final Get< Cell< A > > placeholders;
+
+	private final Scheduler scheduler;
+
+	/**
+	 * Placeholder cells of pending loads.
+	 */
+	private final ConcurrentHashMap< Long, Cell< A > > pending;
+
+	private final CopyOnWriteArrayList< LoadListener > listeners;
+
+	/**
+	 * Create a cache that loads cells on {@code numLoaderThreads} daemon
+	 * threads.
+	 *
+	 * @param cache
+	 *            holds valid cells and knows how to load them.
+	 * @param placeholders
+	 *            creates invalid placeholder cells, see
+	 *            {@link #emptyCells(CellGrid, Fraction, VolatileArrayDataAccess)}.
+	 * @param numLoaderThreads
+	 *            how many cells may be loaded concurrently.
+	 */
+	public AsyncVolatileCellCache( final BoundedCellCache< A > cache, final Get< Cell< A > > placeholders, final int numLoaderThreads )
+	{
+		this( cache, placeholders, new ExecutorScheduler( Executors.newFixedThreadPool( numLoaderThreads, new LoaderThreadFactory() ), true ) );
+	}
+
+	/**
+	 * Create a cache that loads cells on the given {@link ExecutorService}.
+	 * The service is not shut down by {@link #shutdown()}.
+	 *
+	 * @param cache
+	 *            holds valid cells and knows how to load them.
+	 * @param placeholders
+	 *            creates invalid placeholder cells, see
+	 *            {@link #emptyCells(CellGrid, Fraction, VolatileArrayDataAccess)}.
+	 * @param loaders
+	 *            executes cell loads.
+	 */
+	public AsyncVolatileCellCache( final BoundedCellCache< A > cache, final Get< Cell< A > > placeholders, final ExecutorService loaders )
+	{
+		this( cache, placeholders, new ExecutorScheduler( loaders, false ) );
+	}
+
+	/**
+	 * Create a cache that loads cells through a prioritized
+	 * {@link CellLoadQueue}, which may be shared between several caches (e.g.,
+	 * for the resolution levels of an image pyramid). Requests that are
+	 * cancelled through the queue are re-submitted the next time the cell is
+	 * requested. The queue is not shut down by {@link #shutdown()}.
+	 *
+	 * @param cache
+	 *            holds valid cells and knows how to load them.
+	 * @param placeholders
+	 *            creates invalid placeholder cells, see
+	 *            {@link #emptyCells(CellGrid, Fraction, VolatileArrayDataAccess)}.
+	 * @param queue
+	 *            prioritizes and executes cell loads.
+	 * @param grid
+	 *            the cell layout of this cache.
+	 * @param level
+	 *            the resolution level of this cache, 0 is full resolution.
+	 */
+	public AsyncVolatileCellCache( final BoundedCellCache< A > cache, final Get< Cell< A > > placeholders, final CellLoadQueue queue, final CellGrid grid, final int level )
+	{
+		this( cache, placeholders, ( index, load, onCancel ) -> queue.submit( grid, index, level, load, onCancel ) );
+	}
+
+	private AsyncVolatileCellCache( final BoundedCellCache< A > cache, final Get< Cell< A > > placeholders, final Scheduler scheduler )
+	{
+		this.cache = cache;
+		this.placeholders = placeholders;
+		this.scheduler = scheduler;
+		pending = new ConcurrentHashMap<>();
+		listeners = new CopyOnWriteArrayList<>();
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		final Cell< A > cell = cache.getIfPresent( index );
+		if ( cell != null )
+			return cell;
+
+		final Long key = index;
+		final Cell< A > placeholder = pending.get( key );
+		if ( placeholder != null )
+			return placeholder;
+
+		final Cell< A > created = placeholders.get( index );
+		final Cell< A > previous = pending.putIfAbsent( key, created );
+		if ( previous != null )
+			return previous;
+
+		final Runnable cancel = () -> pending.remove( key, created );
+		try
+		{
+			scheduler.schedule( index, () -> load( key ), cancel );
+		}
+		catch ( final RejectedExecutionException | IllegalStateException e )
+		{
+			cancel.run();
+		}
+		return created;
+	}
+
+	private void load( final Long key )
+	{
+		try
+		{
+			cache.get( key );
+		}
+		finally
+		{
+			pending.remove( key );
+		}
+		for ( final LoadListener l : listeners )
+			l.cellLoaded( key );
+	}
+
+	/**
+	 * @return the underlying cache of valid cells.
+	 */
+	public BoundedCellCache< A > getCache()
+	{
+		return cache;
+	}
+
+	/**
+	 * @return the number of cells that are currently queued or being loaded.
+	 */
+	public int getPendingCount()
+	{
+		return pending.size();
+	}
+
+	public void addLoadListener( final LoadListener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeLoadListener( final LoadListener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Stop the loader threads if they were created by this cache. Queued loads
+	 * are still executed, cells requested afterwards remain invalid.
+	 */
+	public void shutdown()
+	{
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Create a {@link Get} that produces invalid cells with the dimensions
+	 * prescribed by {@code grid}.
+	 *
+	 * @param grid
+	 *            the cell layout.
+	 * @param entitiesPerPixel
+	 *            the number of entities per pixel of the pixel type.
+	 * @param creator
+	 *            used to create invalid access instances.
+	 */
+	public static < A extends VolatileArrayDataAccess< A > > Get< Cell< A > > emptyCells( final CellGrid grid, final Fraction entitiesPerPixel, final A creator )
+	{
+		final int n = grid.numDimensions();
+		return index -> {
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final A data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ), false );
+			return new Cell<>( cellDims, cellMin, data );
+		};
+	}
+
+	@FunctionalInterface
+	private interface Scheduler
+	{
+		void schedule( long index, Runnable load, Runnable onCancel );
+
+		default void shutdown()
+		{}
+	}
+
+	private static final class ExecutorScheduler implements Scheduler
+	{
+		private final ExecutorService loaders;
+
+		private final boolean ownsLoaders;
+
+		ExecutorScheduler( final ExecutorService loaders, final boolean ownsLoaders )
+		{
+			this.loaders = loaders;
+			this.ownsLoaders = ownsLoaders;
+		}
+
+		@Override
+		public void schedule( final long index, final Runnable load, final Runnable onCancel )
+		{
+			loaders.execute( load );
+		}
+
+		@Override
+		public void shutdown()
+		{
+			if ( ownsLoaders )
+				loaders.shutdown();
+		}
+	}
+
+	private static final class LoaderThreadFactory implements ThreadFactory
+	{
+		private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+
+		private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+		private final String prefix = "cell-loader-" + poolNumber.getAndIncrement() + "-thread-";
+
+		@Override
+		public Thread newThread( final Runnable r )
+		{
+			final Thread t = new Thread( r, prefix + threadNumber.getAndIncrement() );
+			t.setDaemon( true );
+			t.setPriority( Thread.MIN_PRIORITY );
+			return t;
+		}
+	}
+}
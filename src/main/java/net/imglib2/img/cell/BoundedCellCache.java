@@ -0,0 +1,511 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * A {@link Get} that caches the {@link Cell Cells} produced by another
+ * {@link Get} (the loader). It is meant to be plugged into a
+ * {@link LazyCellImg}, such that cells are loaded once instead of every time a
+ * sampler enters them.
+ * <p>
+ * The cache strongly holds cells up to a total size of {@code maxBytes}, as
+ * measured by a {@link Weigher}. If this bound is exceeded, the least recently
+ * used cells are evicted. With {@link EvictionPolicy#SOFT_REFERENCE}, evicted
+ * cells remain softly reachable and are re-used until the garbage collector
+ * reclaims them.
+ * </p>
+ * <p>
+ * Concurrent requests for the same cell trigger a single load only. All
+ * requesting threads receive the same {@link Cell} instance.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying native access type
+ */
+public class BoundedCellCache< A > implements Get< Cell< A > >
+{
+	/**
+	 * What happens with cells that are evicted from the strongly referenced
+	 * part of the cache.
+	 */
+	public enum EvictionPolicy
+	{
+		/**
+		 * Evicted cells are discarded.
+		 */
+		LRU,
+
+		/**
+		 * Evicted cells are kept as {@link SoftReference}s until the garbage
+		 * collector reclaims them.
+		 */
+		SOFT_REFERENCE
+	}
+
+	/**
+	 * Computes the memory footprint of a {@link Cell} in bytes.
+	 */
+	@FunctionalInterface
+	public interface Weigher< A >
+	{
+		long weigh( Cell< A > cell );
+	}
+
+	private final Get< Cell< A > > loader;
+
+	private final long maxBytes;
+
+	private final EvictionPolicy policy;
+
+	private final Weigher< A > weigher;
+
+	private final ConcurrentHashMap< Long, Entry > map;
+
+	/**
+	 * Strongly referenced entries in access order. All modifications of
+	 * {@link #lru} and {@link #currentBytes} are synchronized on {@link #lru}.
+	 */
+	private final LinkedHashMap< Long, Entry > lru;
+
+	private long currentBytes;
+
+	private final ReferenceQueue< Cell< A > > queue;
+
+	private final AtomicLong hits;
+
+	private final AtomicLong misses;
+
+	private final AtomicLong evictions;
+
+	/**
+	 * Create a cache that holds at most {@code maxBytes} worth of cells, and
+	 * discards least recently used cells when full. The size of cells is
+	 * computed by {@link #arrayDataWeigher()}.
+	 *
+	 * @param loader
+	 *            loads a cell given its flattened grid index.
+	 * @param maxBytes
+	 *            the maximum size of strongly held cells.
+	 */
+	public BoundedCellCache( final Get< Cell< A > > loader, final long maxBytes )
+	{
+		this( loader, maxBytes, EvictionPolicy.LRU );
+	}
+
+	/**
+	 * Create a cache that holds at most {@code maxBytes} worth of cells. The
+	 * size of cells is computed by {@link #arrayDataWeigher()}.
+	 *
+	 * @param loader
+	 *            loads a cell given its flattened grid index.
+	 * @param maxBytes
+	 *            the maximum size of strongly held cells.
+	 * @param policy
+	 *            what to do with evicted cells.
+	 */
+	public BoundedCellCache( final Get< Cell< A > > loader, final long maxBytes, final EvictionPolicy policy )
+	{
+		this( loader, maxBytes, policy, arrayDataWeigher() );
+	}
+
+	/**
+	 * Create a cache that holds at most {@code maxBytes} worth of cells.
+	 *
+	 * @param loader
+	 *            loads a cell given its flattened grid index.
+	 * @param maxBytes
+	 *            the maximum size of strongly held cells.
+	 * @param policy
+	 *            what to do with evicted cells.
+	 * @param weigher
+	 *            computes the size of a cell in bytes.
+	 */
+	public BoundedCellCache( final Get< Cell< A > > loader, final long maxBytes, final EvictionPolicy policy, final Weigher< A > weigher )
+	{
+		if ( maxBytes < 0 )
+			throw new IllegalArgumentException( "maxBytes < 0" );
+
+		this.loader = loader;
+		this.maxBytes = maxBytes;
+		this.policy = policy;
+		this.weigher = weigher;
+		map = new ConcurrentHashMap<>();
+		lru = new LinkedHashMap<>( 16, 0.75f, true );
+		currentBytes = 0;
+		queue = new ReferenceQueue<>();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		cleanUp();
+		final Long key = index;
+		while ( true )
+		{
+			Entry entry = map.get( key );
+			if ( entry == null )
+			{
+				final Entry created = new Entry( index );
+				entry = map.putIfAbsent( key, created );
+				if ( entry == null )
+				{
+					misses.incrementAndGet();
+					return load( created );
+				}
+			}
+
+			final Cell< A > cell = entry.await();
+			if ( cell != null )
+			{
+				hits.incrementAndGet();
+				insert( entry, cell );
+				return cell;
+			}
+
+			// loading failed or the cell was garbage-collected
+			map.remove( key, entry );
+		}
+	}
+
+	/**
+	 * Get the cell with the given index if it is in the cache and completely
+	 * loaded. Never invokes the loader and never blocks on a load that is in
+	 * progress.
+	 *
+	 * @param index
+	 *            flattened grid index of the cell.
+	 * @return the cached cell, or {@code null} if it is not available.
+	 */
+	public Cell< A > getIfPresent( final long index )
+	{
+		cleanUp();
+		final Entry entry = map.get( index );
+		if ( entry == null )
+			return null;
+		final Cell< A > cell = entry.getIfDone();
+		if ( cell != null )
+		{
+			hits.incrementAndGet();
+			insert( entry, cell );
+		}
+		return cell;
+	}
+
+	/**
+	 * Remove all cells from the cache. Loads that are in progress complete
+	 * normally, but their results are not cached.
+	 */
+	public void invalidateAll()
+	{
+		synchronized ( lru )
+		{
+			map.clear();
+			for ( final Entry entry : lru.values() )
+				entry.cell = null;
+			lru.clear();
+			currentBytes = 0;
+		}
+		cleanUp();
+	}
+
+	/**
+	 * @return the number of requests that were answered without invoking the
+	 *         loader.
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that invoked the loader.
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of cells that were evicted from the strongly
+	 *         referenced part of the cache.
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return the total size in bytes of the strongly held cells.
+	 */
+	public long getCurrentBytes()
+	{
+		synchronized ( lru )
+		{
+			return currentBytes;
+		}
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	public EvictionPolicy getEvictionPolicy()
+	{
+		return policy;
+	}
+
+	/**
+	 * Reset hit, miss, and eviction counts to 0.
+	 */
+	public void resetStatistics()
+	{
+		hits.set( 0 );
+		misses.set( 0 );
+		evictions.set( 0 );
+	}
+
+	/**
+	 * A {@link Weigher} for cells whose data is an {@link ArrayDataAccess}. The
+	 * size of a cell is the size of its primitive storage array.
+	 *
+	 * @throws IllegalArgumentException
+	 *             when applied to a cell whose data is not backed by a
+	 *             primitive array.
+	 */
+	public static < A > Weigher< A > arrayDataWeigher()
+	{
+		return cell -> {
+			final Object data = cell.getData();
+			if ( data instanceof ArrayDataAccess )
+			{
+				final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+				if ( array != null && array.getClass().isArray() )
+					return bytesPerElement( array.getClass().getComponentType() ) * Array.getLength( array );
+			}
+			throw new IllegalArgumentException( "Cannot determine the size of " + data + ". Please provide a Weigher." );
+		};
+	}
+
+	private static long bytesPerElement( final Class< ? > componentType )
+	{
+		if ( componentType == byte.class || componentType == boolean.class )
+			return 1;
+		if ( componentType == short.class || componentType == char.class )
+			return 2;
+		if ( componentType == int.class || componentType == float.class )
+			return 4;
+		if ( componentType == long.class || componentType == double.class )
+			return 8;
+		throw new IllegalArgumentException( "not a primitive array: " + componentType );
+	}
+
+	private Cell< A > load( final Entry entry )
+	{
+		final Cell< A > cell;
+		final long weight;
+		try
+		{
+			cell = loader.get( entry.key );
+			if ( cell == null )
+				throw new IllegalStateException( "loader returned null for cell " + entry.key );
+			weight = weigher.weigh( cell );
+		}
+		catch ( final RuntimeException | Error e )
+		{
+			map.remove( entry.key, entry );
+			entry.failed();
+			throw e;
+		}
+		entry.loaded( cell, weight );
+		insert( entry, cell );
+		return cell;
+	}
+
+	/**
+	 * Mark {@code entry} as most recently used. If it is not strongly held
+	 * (because it was just loaded or was evicted earlier) add it to the
+	 * {@link #lru} list, then evict until the size bound is satisfied.
+	 */
+	private void insert( final Entry entry, final Cell< A > cell )
+	{
+		synchronized ( lru )
+		{
+			if ( lru.get( entry.key ) == entry )
+				return;
+
+			if ( map.get( entry.key ) != entry )
+				return;
+
+			entry.cell = cell;
+			final Entry previous = lru.put( entry.key, entry );
+			if ( previous != null )
+				currentBytes -= previous.weight;
+			currentBytes += entry.weight;
+
+			final Iterator< Entry > it = lru.values().iterator();
+			while ( currentBytes > maxBytes && it.hasNext() )
+			{
+				final Entry eldest = it.next();
+				it.remove();
+				currentBytes -= eldest.weight;
+				eldest.cell = null;
+				if ( policy == EvictionPolicy.LRU )
+					map.remove( eldest.key, eldest );
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Remove entries whose cells have been garbage-collected.
+	 */
+	private void cleanUp()
+	{
+		while ( true )
+		{
+			@SuppressWarnings( "unchecked" )
+			final CellReference ref = ( CellReference ) queue.poll();
+			if ( ref == null )
+				break;
+			map.remove( ref.entry.key, ref.entry );
+		}
+	}
+
+	private final class CellReference extends SoftReference< Cell< A > >
+	{
+		final Entry entry;
+
+		CellReference( final Cell< A > cell, final Entry entry )
+		{
+			super( cell, queue );
+			this.entry = entry;
+		}
+	}
+
+	private final class Entry
+	{
+		final long key;
+
+		/**
+		 * Strong reference to the cell while this entry is in {@link #lru}.
+		 */
+		volatile Cell< A > cell;
+
+		/**
+		 * Soft reference to the cell, for {@link EvictionPolicy#SOFT_REFERENCE}.
+		 */
+		volatile CellReference ref;
+
+		long weight;
+
+		private boolean done;
+
+		Entry( final long key )
+		{
+			this.key = key;
+		}
+
+		synchronized void loaded( final Cell< A > cell, final long weight )
+		{
+			this.weight = weight;
+			this.cell = cell;
+			if ( policy == EvictionPolicy.SOFT_REFERENCE )
+				ref = new CellReference( cell, this );
+			done = true;
+			notifyAll();
+		}
+
+		synchronized void failed()
+		{
+			done = true;
+			notifyAll();
+		}
+
+		/**
+		 * Wait until loading is finished.
+		 *
+		 * @return the cell, or {@code null} if loading failed or the cell was
+		 *         evicted and garbage-collected.
+		 */
+		synchronized Cell< A > await()
+		{
+			boolean interrupted = false;
+			while ( !done )
+			{
+				try
+				{
+					wait();
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+			}
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+			return getIfDone();
+		}
+
+		/**
+		 * @return the cell, or {@code null} if loading is not finished, failed,
+		 *         or the cell was evicted and garbage-collected.
+		 */
+		synchronized Cell< A > getIfDone()
+		{
+			if ( !done )
+				return null;
+			final Cell< A > c = cell;
+			if ( c != null )
+				return c;
+			final CellReference r = ref;
+			return r == null ? null : r.get();
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Processes an {@link AbstractCellImg} in parallel, one task per {@link Cell}.
+ * <p>
+ * Cells are independent units of storage, so tasks on different cells do not
+ * share data and work on cache-local memory. Tasks are executed in a
+ * work-stealing {@link ForkJoinPool}: the range of cell indices is split
+ * recursively, and idle workers steal the unprocessed halves.
+ * </p>
+ * <p>
+ * Per-cell functions may read an input with a halo around the cell, e.g., for
+ * filters with a neighborhood. The input is extended by an
+ * {@link OutOfBoundsFactory}, so the halo of border cells is well defined.
+ * </p>
+ */
+public class CellExecutor
+{
+	/**
+	 * A function applied to one cell.
+	 *
+	 * @param <T>
+	 *            pixel type of the processed image
+	 * @param <S>
+	 *            pixel type of the input
+	 */
+	@FunctionalInterface
+	public interface CellFunction< T, S >
+	{
+		/**
+		 * @param cell
+		 *            the pixels of the cell, as an interval of the processed
+		 *            image.
+		 * @param input
+		 *            the input in the interval of the cell expanded by the
+		 *            halo.
+		 */
+		public void apply( RandomAccessibleInterval< T > cell, RandomAccessibleInterval< S > input );
+	}
+
+	/**
+	 * Notified whenever a cell was processed. May be called concurrently from
+	 * several worker threads.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener
+	{
+		public void cellsProcessed( long numProcessed, long numCells );
+	}
+
+	private final ForkJoinPool pool;
+
+	private ProgressListener progressListener;
+
+	/**
+	 * Create a {@link CellExecutor} that runs in the common
+	 * {@link ForkJoinPool}.
+	 */
+	public CellExecutor()
+	{
+		this( ForkJoinPool.commonPool() );
+	}
+
+	public CellExecutor( final ForkJoinPool pool )
+	{
+		this.pool = pool;
+	}
+
+	public void setProgressListener( final ProgressListener progressListener )
+	{
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Apply {@code action} to every cell of {@code img}, and wait until all
+	 * cells are processed.
+	 */
+	public < T extends NativeType< T > > void forEachCell( final AbstractCellImg< T, ?, ?, ? > img, final Consumer< RandomAccessibleInterval< T > > action )
+	{
+		forEachCell( img, img, new long[ img.numDimensions() ], ( cell, input ) -> action.accept( cell ) );
+	}
+
+	/**
+	 * Apply {@code function} to every cell of {@code img}, with an input
+	 * {@code source} that is extended by {@code outOfBounds} and read with
+	 * {@code halo} pixels around each cell. Wait until all cells are
+	 * processed.
+	 */
+	public < T extends NativeType< T >, S > void forEachCell(
+			final AbstractCellImg< T, ?, ?, ? > img,
+			final RandomAccessibleInterval< S > source,
+			final OutOfBoundsFactory< S, RandomAccessibleInterval< S > > outOfBounds,
+			final long[] halo,
+			final CellFunction< T, S > function )
+	{
+		forEachCell( img, Views.extend( source, outOfBounds ), halo, function );
+	}
+
+	/**
+	 * Apply {@code function} to every cell of {@code img}, with an input
+	 * {@code source} read with {@code halo} pixels around each cell. Wait until
+	 * all cells are processed.
+	 *
+	 * @param source
+	 *            input, defined at least on the interval of {@code img}
+	 *            expanded by {@code halo}.
+	 * @param halo
+	 *            number of additional input pixels on each side of a cell, per
+	 *            dimension.
+	 */
+	public < T extends NativeType< T >, S > void forEachCell(
+			final AbstractCellImg< T, ?, ?, ? > img,
+			final RandomAccessible< S > source,
+			final long[] halo,
+			final CellFunction< T, S > function )
+	{
+		if ( halo.length != img.numDimensions() )
+			throw new IllegalArgumentException( "halo has " + halo.length + " dimensions, image has " + img.numDimensions() );
+		final long numCells = img.getCells().size();
+		final CellRangeAction< T, S > action = new CellRangeAction<>( img, source, halo, function, new AtomicLong(), numCells, progressListener, 0, numCells );
+		pool.invoke( action );
+	}
+
+	/**
+	 * Processes the cells with indices {@code [from, to)}, splitting the range
+	 * in halves as long as it contains more than one cell.
+	 */
+	private static class CellRangeAction< T extends NativeType< T >, S > extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final AbstractCellImg< T, ?, ?, ? > img;
+
+		private final RandomAccessible< S > source;
+
+		private final long[] halo;
+
+		private final CellFunction< T, S > function;
+
+		private final AtomicLong numProcessed;
+
+		private final long numCells;
+
+		private final ProgressListener progressListener;
+
+		private final long from;
+
+		private final long to;
+
+		CellRangeAction(
+				final AbstractCellImg< T, ?, ?, ? > img,
+				final RandomAccessible< S > source,
+				final long[] halo,
+				final CellFunction< T, S > function,
+				final AtomicLong numProcessed,
+				final long numCells,
+				final ProgressListener progressListener,
+				final long from,
+				final long to )
+		{
+			this.img = img;
+			this.source = source;
+			this.halo = halo;
+			this.function = function;
+			this.numProcessed = numProcessed;
+			this.numCells = numCells;
+			this.progressListener = progressListener;
+			this.from = from;
+			this.to = to;
+		}
+
+		private CellRangeAction< T, S > subRange( final long subFrom, final long subTo )
+		{
+			return new CellRangeAction<>( img, source, halo, function, numProcessed, numCells, progressListener, subFrom, subTo );
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from > 1 )
+			{
+				final long mid = ( from + to ) >>> 1;
+				invokeAll( subRange( from, mid ), subRange( mid, to ) );
+			}
+			else if ( to > from )
+			{
+				final int n = img.numDimensions();
+				final long[] min = new long[ n ];
+				final int[] dims = new int[ n ];
+				img.getCellGrid().getCellDimensions( from, min, dims );
+				final long[] max = new long[ n ];
+				for ( int d = 0; d < n; ++d )
+					max[ d ] = min[ d ] + dims[ d ] - 1;
+				final FinalInterval cell = new FinalInterval( min, max );
+
+				function.apply( Views.interval( img, cell ), Views.interval( source, Intervals.expand( cell, halo ) ) );
+
+				final long processed = numProcessed.incrementAndGet();
+				if ( progressListener != null )
+					progressListener.cellsProcessed( processed, numCells );
+			}
+		}
+	}
+}
@@ -1,15 +1,26 @@
 package net.imglib2.img.cell;
 
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
 import net.imglib2.img.list.ListImg;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
 
 public class CellImg< T extends NativeType< T >, A > extends AbstractCellImg< T, A, Cell< A >, ListImg< Cell< A > > >
 {
-	private final CellImgFactory< T > factory;
+	private final NativeImgFactory< T > factory;
 
 	public CellImg( final CellImgFactory< T > factory, final CellGrid grid, final ListImg< Cell< A > > imgOfCells, final Fraction entitiesPerPixel )
+	{
+		this( ( NativeImgFactory< T > ) factory, grid, imgOfCells, entitiesPerPixel );
+	}
+
+	/**
+	 * @param factory
+	 *            creates copies of this image, e.g., a factory of off-heap
+	 *            {@link CellImg}s.
+	 */
+	public CellImg( final NativeImgFactory< T > factory, final CellGrid grid, final ListImg< Cell< A > > imgOfCells, final Fraction entitiesPerPixel )
 	{
 		super( grid, imgOfCells, entitiesPerPixel );
 		this.factory = factory;
@@ -34,9 +34,14 @@
 
 package net.imglib2.img.cell;
 
+import net.imglib2.Interval;
+import net.imglib2.util.Intervals;
+
 /**
  * Iteration order for a {@link CellImg}. A {@link CellImg} is iterated cell by
- * cell, where each cell is iterated in flat iteration order.
+ * cell, where each cell is iterated in flat iteration order. Sub-intervals of
+ * a {@link CellImg} are iterated in the same way, visiting only the cells (and
+ * the parts of cells) inside the interval.
  *
  * @author Tobias Pietzsch
  */
@@ -44,14 +49,26 @@ public class CellIterationOrder
 {
 	private final AbstractCellImg< ?, ?, ?, ? > img;
 
+	private final Interval interval;
+
 	public CellIterationOrder( final AbstractCellImg< ?, ?, ?, ? > img )
+	{
+		this( img, img );
+	}
+
+	/**
+	 * Iteration order for the given sub-interval of img.
+	 */
+	public CellIterationOrder( final AbstractCellImg< ?, ?, ?, ? > img, final Interval interval )
 	{
 		this.img = img;
+		this.interval = interval;
 	}
 
 	/**
 	 * To be equal an object has to be a {@link CellIterationOrder} on a
-	 * {@link CellImg} of the same dimensions and cell-dimensions.
+	 * {@link CellImg} of the same dimensions and cell-dimensions, and the same
+	 * interval.
 	 *
 	 * @return true, if obj is a compatible {@link CellIterationOrder}.
 	 */
@@ -63,6 +80,7 @@ public class CellIterationOrder
 
 		final AbstractCellImg< ?, ?, ?, ? > other = ( ( CellIterationOrder ) obj ).img;
 		return other.getCellGrid().equals( img.getCellGrid() )
-				&& other.getCells().iterationOrder().equals( img.getCells().iterationOrder() );
+				&& other.getCells().iterationOrder().equals( img.getCells().iterationOrder() )
+				&& Intervals.equals( ( ( CellIterationOrder ) obj ).interval, interval );
 	}
 }
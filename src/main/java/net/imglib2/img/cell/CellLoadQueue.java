@@ -0,0 +1,379 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import net.imglib2.RealInterval;
+
+/**
+ * A queue of cell loading requests that is processed by a fixed number of
+ * daemon threads, most important requests first.
+ * <p>
+ * Requests are ordered by resolution level (coarser levels first, because
+ * they fill the view fastest), then by the distance of the cell center to the
+ * current view center, then by submission order. The view center is specified
+ * in full resolution coordinates. Cell positions at resolution level
+ * {@code l} are scaled to full resolution by the downsampling factors set with
+ * {@link #setDownsamplingFactors(int, double...)}, which default to
+ * {@code 2^l} in every dimension.
+ * </p>
+ * <p>
+ * Changing the view center re-prioritizes all queued requests. Requests that
+ * have not started yet can be cancelled individually, or in bulk for all cells
+ * outside of the current view.
+ * </p>
+ */
+public class CellLoadQueue
+{
+	/**
+	 * A request to load one cell, as returned by
+	 * {@link CellLoadQueue#submit(CellGrid, long, int, Runnable, Runnable)}.
+	 */
+	public final class Request
+	{
+		private final long index;
+
+		private final int level;
+
+		private final Runnable load;
+
+		private final Runnable onCancel;
+
+		/**
+		 * bounding box of the cell in full resolution coordinates.
+		 */
+		private final double[] min;
+
+		private final double[] max;
+
+		private final long sequence;
+
+		private double distance;
+
+		private boolean queued;
+
+		private Request( final CellGrid grid, final long index, final int level, final Runnable load, final Runnable onCancel, final long sequence )
+		{
+			this.index = index;
+			this.level = level;
+			this.load = load;
+			this.onCancel = onCancel;
+			this.sequence = sequence;
+
+			final int n = grid.numDimensions();
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final double[] s = getDownsamplingFactors( level, n );
+			min = new double[ n ];
+			max = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] = cellMin[ d ] * s[ d ];
+				max[ d ] = ( cellMin[ d ] + cellDims[ d ] ) * s[ d ];
+			}
+		}
+
+		/**
+		 * @return flattened grid index of the requested cell.
+		 */
+		public long getIndex()
+		{
+			return index;
+		}
+
+		public int getLevel()
+		{
+			return level;
+		}
+
+		/**
+		 * Remove this request from the queue if it has not started yet.
+		 *
+		 * @return whether the request was cancelled.
+		 */
+		public boolean cancel()
+		{
+			final boolean cancelled;
+			synchronized ( CellLoadQueue.this )
+			{
+				cancelled = queued && queue.remove( this );
+				queued = false;
+			}
+			if ( cancelled && onCancel != null )
+				onCancel.run();
+			return cancelled;
+		}
+
+		private void updateDistance()
+		{
+			distance = 0;
+			if ( center != null )
+				for ( int d = 0; d < min.length && d < center.length; ++d )
+				{
+					final double diff = 0.5 * ( min[ d ] + max[ d ] ) - center[ d ];
+					distance += diff * diff;
+				}
+		}
+
+		private boolean intersects( final RealInterval view )
+		{
+			final int n = Math.min( min.length, view.numDimensions() );
+			for ( int d = 0; d < n; ++d )
+				if ( max[ d ] <= view.realMin( d ) || min[ d ] > view.realMax( d ) )
+					return false;
+			return true;
+		}
+	}
+
+	private final PriorityQueue< Request > queue;
+
+	private final HashMap< Integer, double[] > downsamplingFactors;
+
+	private double[] center;
+
+	private long sequence;
+
+	private boolean shutdown;
+
+	/**
+	 * Create a queue that is processed by {@code numThreads} daemon threads.
+	 */
+	public CellLoadQueue( final int numThreads )
+	{
+		queue = new PriorityQueue<>( 11, CellLoadQueue::compare );
+		downsamplingFactors = new HashMap<>();
+		center = null;
+		sequence = 0;
+		shutdown = false;
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final Thread t = new Thread( this::work, "cell-load-queue-thread-" + i );
+			t.setDaemon( true );
+			t.setPriority( Thread.MIN_PRIORITY );
+			t.start();
+		}
+	}
+
+	private static int compare( final Request r1, final Request r2 )
+	{
+		if ( r1.level != r2.level )
+			return r1.level > r2.level ? -1 : 1;
+		final int c = Double.compare( r1.distance, r2.distance );
+		return c != 0 ? c : Long.compare( r1.sequence, r2.sequence );
+	}
+
+	/**
+	 * Enqueue loading of a cell.
+	 *
+	 * @param grid
+	 *            the cell grid of the requested resolution level.
+	 * @param index
+	 *            flattened grid index of the requested cell.
+	 * @param level
+	 *            the resolution level, 0 is full resolution.
+	 * @param load
+	 *            loads the cell.
+	 * @param onCancel
+	 *            run if the request is cancelled before it started. May be
+	 *            {@code null}.
+	 * @return a handle to cancel the request.
+	 */
+	public synchronized Request submit( final CellGrid grid, final long index, final int level, final Runnable load, final Runnable onCancel )
+	{
+		if ( shutdown )
+			throw new IllegalStateException( "queue is shut down" );
+		final Request request = new Request( grid, index, level, load, onCancel, sequence++ );
+		request.updateDistance();
+		request.queued = true;
+		queue.add( request );
+		notify();
+		return request;
+	}
+
+	/**
+	 * Set the view center in full resolution coordinates, and re-prioritize
+	 * all queued requests accordingly.
+	 */
+	public synchronized void setViewCenter( final double... center )
+	{
+		this.center = center.clone();
+		final ArrayList< Request > requests = new ArrayList<>( queue );
+		queue.clear();
+		for ( final Request request : requests )
+		{
+			request.updateDistance();
+			queue.add( request );
+		}
+	}
+
+	/**
+	 * Cancel all queued requests for cells that do not intersect {@code view}
+	 * (in full resolution coordinates).
+	 *
+	 * @return the number of cancelled requests.
+	 */
+	public int cancelOutside( final RealInterval view )
+	{
+		final ArrayList< Request > cancelled = new ArrayList<>();
+		synchronized ( this )
+		{
+			final Iterator< Request > it = queue.iterator();
+			while ( it.hasNext() )
+			{
+				final Request request = it.next();
+				if ( !request.intersects( view ) )
+				{
+					it.remove();
+					request.queued = false;
+					cancelled.add( request );
+				}
+			}
+		}
+		notifyCancelled( cancelled );
+		return cancelled.size();
+	}
+
+	/**
+	 * Cancel all queued requests.
+	 *
+	 * @return the number of cancelled requests.
+	 */
+	public int cancelAll()
+	{
+		final ArrayList< Request > cancelled;
+		synchronized ( this )
+		{
+			cancelled = new ArrayList<>( queue );
+			queue.clear();
+			for ( final Request request : cancelled )
+				request.queued = false;
+		}
+		notifyCancelled( cancelled );
+		return cancelled.size();
+	}
+
+	/**
+	 * Set the factors by which resolution level {@code level} is downsampled
+	 * with respect to full resolution.
+	 */
+	public synchronized void setDownsamplingFactors( final int level, final double... factors )
+	{
+		downsamplingFactors.put( level, factors.clone() );
+	}
+
+	/**
+	 * @return the number of requests that have not started yet.
+	 */
+	public synchronized int size()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Cancel all queued requests and stop the worker threads after they
+	 * finished their current request.
+	 */
+	public void shutdown()
+	{
+		synchronized ( this )
+		{
+			shutdown = true;
+			notifyAll();
+		}
+		cancelAll();
+	}
+
+	private synchronized double[] getDownsamplingFactors( final int level, final int n )
+	{
+		final double[] factors = downsamplingFactors.get( level );
+		if ( factors != null )
+			return factors;
+		final double[] s = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			s[ d ] = Math.pow( 2, level );
+		return s;
+	}
+
+	private void notifyCancelled( final ArrayList< Request > cancelled )
+	{
+		for ( final Request request : cancelled )
+			if ( request.onCancel != null )
+				request.onCancel.run();
+	}
+
+	private synchronized Request take() throws InterruptedException
+	{
+		while ( queue.isEmpty() && !shutdown )
+			wait();
+		if ( shutdown )
+			return null;
+		final Request request = queue.poll();
+		request.queued = false;
+		return request;
+	}
+
+	private void work()
+	{
+		while ( true )
+		{
+			final Request request;
+			try
+			{
+				request = take();
+			}
+			catch ( final InterruptedException e )
+			{
+				return;
+			}
+			if ( request == null )
+				return;
+
+			try
+			{
+				request.load.run();
+			}
+			catch ( final Throwable e )
+			{
+				final Thread t = Thread.currentThread();
+				t.getUncaughtExceptionHandler().uncaughtException( t, e );
+			}
+		}
+	}
+}
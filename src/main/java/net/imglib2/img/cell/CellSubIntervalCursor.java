@@ -0,0 +1,365 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link Cursor} on a sub-interval of an {@link AbstractCellImg}.
+ * <p>
+ * Only the cells intersecting the interval are visited, in the order of the
+ * cell grid. Within each cell, the intersection with the interval is iterated
+ * in flat order, as runs of contiguous indices along dimension 0. The
+ * position is derived from the run, so the cursor is cheap to localize and
+ * serves as localizing cursor too.
+ * </p>
+ * <p>
+ * With {@link #CellSubIntervalCursor(AbstractCellImg, Interval, long[])
+ * steps}, only the positions <em>min + k * steps</em> of the interval are
+ * visited, cells that contain none of them are skipped, and positions are
+ * reported as <em>min + k</em>.
+ * </p>
+ */
+public class CellSubIntervalCursor< T extends NativeType< T >, C extends Cell< ? > >
+		extends AbstractCursor< T >
+		implements AbstractCellImg.CellImgSampler< C >
+{
+	protected final T type;
+
+	protected final RandomAccess< C > cellAccess;
+
+	private final CellGrid grid;
+
+	/**
+	 * range of cell grid positions intersecting the interval, and the current
+	 * cell grid position.
+	 */
+	private final long[] gridMin, gridMax, gridPosition;
+
+	/**
+	 * bounds of the interval. {@code max} is the last visited position.
+	 */
+	private final long[] min, max;
+
+	/**
+	 * distance between visited positions.
+	 */
+	private final long[] steps;
+
+	private final int step0;
+
+	/**
+	 * min and steps of the current cell.
+	 */
+	private final long[] cellMin;
+
+	private final int[] cellDims;
+
+	private final int[] cellSteps;
+
+	/**
+	 * first and last visited position in the current cell.
+	 */
+	private final long[] lo, hi;
+
+	/**
+	 * position of the current run. Element 0 is the start of the run.
+	 */
+	private final long[] runPosition;
+
+	private int runStart;
+
+	private int runEnd;
+
+	private boolean isLastRun;
+
+	/**
+	 * The current index of the type. It is faster to duplicate this here than
+	 * to access it through type.getIndex().
+	 */
+	private int index;
+
+	protected CellSubIntervalCursor( final CellSubIntervalCursor< T, C > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		type = cursor.type.duplicateTypeOnSameNativeImg();
+		cellAccess = cursor.cellAccess.copyRandomAccess();
+		grid = cursor.grid;
+		gridMin = cursor.gridMin.clone();
+		gridMax = cursor.gridMax.clone();
+		gridPosition = cursor.gridPosition.clone();
+		min = cursor.min.clone();
+		max = cursor.max.clone();
+		steps = cursor.steps.clone();
+		step0 = cursor.step0;
+		cellMin = cursor.cellMin.clone();
+		cellDims = cursor.cellDims.clone();
+		cellSteps = cursor.cellSteps.clone();
+		lo = cursor.lo.clone();
+		hi = cursor.hi.clone();
+		runPosition = cursor.runPosition.clone();
+		runStart = cursor.runStart;
+		runEnd = cursor.runEnd;
+		isLastRun = cursor.isLastRun;
+		index = cursor.index;
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public CellSubIntervalCursor( final AbstractCellImg< T, ?, C, ? > img, final Interval interval )
+	{
+		this( img, interval, ones( img.numDimensions() ) );
+	}
+
+	/**
+	 * Visit every <em>steps<sub>d</sub></em><sup>th</sup> position of
+	 * {@code interval}, starting at its min.
+	 */
+	public CellSubIntervalCursor( final AbstractCellImg< T, ?, C, ? > img, final Interval interval, final long[] steps )
+	{
+		super( img.numDimensions() );
+
+		type = img.createLinkedType();
+		cellAccess = img.getCells().randomAccess();
+
+		min = new long[ n ];
+		max = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		this.steps = steps.clone();
+		step0 = ( int ) steps[ 0 ];
+		for ( int d = 0; d < n; ++d )
+			max[ d ] -= ( max[ d ] - min[ d ] ) % steps[ d ];
+
+		grid = img.getCellGrid();
+		gridMin = new long[ n ];
+		gridMax = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			gridMin[ d ] = min[ d ] / grid.cellDimension( d );
+			gridMax[ d ] = max[ d ] / grid.cellDimension( d );
+		}
+		gridPosition = new long[ n ];
+		cellMin = new long[ n ];
+		cellDims = new int[ n ];
+		cellSteps = new int[ n ];
+		lo = new long[ n ];
+		hi = new long[ n ];
+		runPosition = new long[ n ];
+
+		reset();
+	}
+
+	private static long[] ones( final int n )
+	{
+		final long[] ones = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			ones[ d ] = 1;
+		return ones;
+	}
+
+	@Override
+	public C getCell()
+	{
+		return cellAccess.get();
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public CellSubIntervalCursor< T, C > copy()
+	{
+		return new CellSubIntervalCursor<>( this );
+	}
+
+	@Override
+	public CellSubIntervalCursor< T, C > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return index < runEnd || !isLastRun;
+	}
+
+	@Override
+	public void fwd()
+	{
+		index += step0;
+		if ( index > runEnd )
+			nextRun();
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		long remaining = steps;
+		while ( remaining > ( runEnd - index ) / step0 )
+		{
+			remaining -= ( runEnd - index ) / step0 + 1;
+			nextRun();
+		}
+		index += ( int ) remaining * step0;
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void reset()
+	{
+		for ( int d = 0; d < n; ++d )
+			gridPosition[ d ] = gridMin[ d ];
+		enterCell();
+		index = runStart - step0;
+		type.updateIndex( index );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		final long p = d == 0 ? runPosition[ 0 ] + index - runStart : runPosition[ d ];
+		return min[ d ] + ( p - min[ d ] ) / steps[ d ];
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		position[ 0 ] = min[ 0 ] + ( runPosition[ 0 ] + index - runStart - min[ 0 ] ) / steps[ 0 ];
+		for ( int d = 1; d < n; ++d )
+			position[ d ] = min[ d ] + ( runPosition[ d ] - min[ d ] ) / steps[ d ];
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	/**
+	 * Move to the first element of the next run, in the current cell or the
+	 * next cell.
+	 */
+	private void nextRun()
+	{
+		for ( int d = 1; d < n; ++d )
+		{
+			if ( runPosition[ d ] < hi[ d ] )
+			{
+				runPosition[ d ] += steps[ d ];
+				startRun();
+				return;
+			}
+			runPosition[ d ] = lo[ d ];
+		}
+
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( gridPosition[ d ] < gridMax[ d ] )
+			{
+				++gridPosition[ d ];
+				if ( enterCell() )
+					return;
+				// skip cells without visited positions
+				d = -1;
+				continue;
+			}
+			gridPosition[ d ] = gridMin[ d ];
+		}
+	}
+
+	/**
+	 * Move to the first element of the cell at {@link #gridPosition}.
+	 *
+	 * @return false if the cell contains no visited position.
+	 */
+	private boolean enterCell()
+	{
+		// decide from the grid alone, so that empty cells are never loaded
+		grid.getCellDimensions( gridPosition, cellMin, cellDims );
+		for ( int d = 0; d < n; ++d )
+		{
+			lo[ d ] = Math.max( min[ d ], cellMin[ d ] );
+			lo[ d ] += ( steps[ d ] - ( lo[ d ] - min[ d ] ) % steps[ d ] ) % steps[ d ];
+			hi[ d ] = Math.min( max[ d ], cellMin[ d ] + cellDims[ d ] - 1 );
+			hi[ d ] -= ( hi[ d ] - min[ d ] ) % steps[ d ];
+			if ( lo[ d ] > hi[ d ] )
+				return false;
+			runPosition[ d ] = lo[ d ];
+		}
+		int step = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			cellSteps[ d ] = step;
+			step *= cellDims[ d ];
+		}
+		cellAccess.setPosition( gridPosition );
+		type.updateContainer( this );
+		startRun();
+		return true;
+	}
+
+	/**
+	 * Move to the first element of the run at {@link #runPosition}.
+	 */
+	private void startRun()
+	{
+		int start = 0;
+		boolean last = true;
+		for ( int d = 0; d < n; ++d )
+		{
+			start += ( int ) ( runPosition[ d ] - cellMin[ d ] ) * cellSteps[ d ];
+			if ( d > 0 && runPosition[ d ] < hi[ d ] )
+				last = false;
+			if ( gridPosition[ d ] < gridMax[ d ] )
+				last = false;
+		}
+		runStart = start;
+		runEnd = start + ( int ) ( hi[ 0 ] - lo[ 0 ] );
+		isLastRun = last;
+		index = start;
+	}
+}
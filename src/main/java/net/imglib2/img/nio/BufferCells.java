@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import java.util.function.BiFunction;
+
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.img.list.ListLocalizingCursor;
+
+/**
+ * Builds the image of {@link Cell Cells} of a
+ * {@link net.imglib2.img.cell.CellImg} whose cells are backed by buffers.
+ */
+final class BufferCells
+{
+	private BufferCells()
+	{}
+
+	/**
+	 * Create a {@link Cell} for every cell of {@code grid}.
+	 *
+	 * @param createData
+	 *            creates the data of a cell from its min and dimensions.
+	 */
+	static < A > ListImg< Cell< A > > create( final CellGrid grid, final BiFunction< long[], int[], A > createData )
+	{
+		final int n = grid.numDimensions();
+		final Cell< A > type = new Cell<>( new int[] { 1 }, new long[] { 1 }, null );
+		final ListImg< Cell< A > > cells = new ListImg<>( grid.getGridDimensions(), type );
+
+		final long[] cellGridPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		final ListLocalizingCursor< Cell< A > > cellCursor = cells.localizingCursor();
+		while ( cellCursor.hasNext() )
+		{
+			cellCursor.fwd();
+			cellCursor.localize( cellGridPosition );
+			grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
+			cellCursor.set( new Cell<>( cellDims, cellMin, createData.apply( cellMin, cellDims ) ) );
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link ArrayImg ArrayImgs} that store their data off-heap in
+ * direct {@link ByteBuffer ByteBuffers} (in native byte order) instead of
+ * primitive arrays. This keeps large images out of the garbage collector's
+ * reach, and allows to hand the memory to native code. The memory can be freed
+ * explicitly by {@link DirectBuffers#release(net.imglib2.img.NativeImg)}.
+ * <p>
+ * A direct buffer holds at most {@code Integer.MAX_VALUE} bytes. Use
+ * {@link DirectCellImgFactory} for larger images.
+ * </p>
+ * <p>
+ * Note that {@link ArrayImg#copy()} creates an on-heap copy.
+ * </p>
+ */
+public class DirectArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	private static ByteBuffer allocate( final long[] dimensions, final Fraction entitiesPerPixel, final int bytesPerEntity )
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel ) * bytesPerEntity;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of bytes in Container too big, use for example DirectCellImgFactory instead: " + numBytes + " > " + Integer.MAX_VALUE );
+		return DirectBuffers.allocate( numBytes );
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new ByteBufferAccess( allocate( dimensions, entitiesPerPixel, 1 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new CharBufferAccess( allocate( dimensions, entitiesPerPixel, 2 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new ShortBufferAccess( allocate( dimensions, entitiesPerPixel, 2 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new IntBufferAccess( allocate( dimensions, entitiesPerPixel, 4 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new LongBufferAccess( allocate( dimensions, entitiesPerPixel, 8 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new FloatBufferAccess( allocate( dimensions, entitiesPerPixel, 4 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new ArrayImg<>( new DoubleBufferAccess( allocate( dimensions, entitiesPerPixel, 8 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectArrayImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+
+/**
+ * Allocation and explicit release of direct {@link ByteBuffer ByteBuffers}
+ * used as off-heap image storage.
+ * <p>
+ * Direct buffers are normally freed some time after they become unreachable.
+ * {@link #release(NativeImg)} frees the memory of an image immediately, if the
+ * runtime allows it (through {@code sun.misc.Unsafe.invokeCleaner} on Java 9
+ * and later, or the buffer's {@code sun.misc.Cleaner} on Java 8). Otherwise
+ * releasing is a no-op and the memory is reclaimed by the garbage collector.
+ * </p>
+ */
+public final class DirectBuffers
+{
+	private DirectBuffers()
+	{}
+
+	private static final Releaser releaser = createReleaser();
+
+	/**
+	 * Allocate a direct buffer of {@code numBytes} bytes in native byte order.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if {@code numBytes > Integer.MAX_VALUE}.
+	 */
+	public static ByteBuffer allocate( final long numBytes )
+	{
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Direct buffers are limited to " + Integer.MAX_VALUE + " bytes: " + numBytes );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+
+	/**
+	 * @return whether {@link #release(ByteBuffer)} frees memory immediately on
+	 *         this runtime.
+	 */
+	public static boolean isReleaseSupported()
+	{
+		return releaser != null;
+	}
+
+	/**
+	 * Free the memory of a direct (or memory-mapped) buffer immediately.
+	 * <p>
+	 * <em>The buffer, and every view of it, must not be accessed afterwards.
+	 * Doing so may crash the virtual machine.</em>
+	 * </p>
+	 *
+	 * @param buffer
+	 *            a buffer that was allocated by {@link #allocate(long)} or
+	 *            returned by {@link java.nio.channels.FileChannel#map}, not a
+	 *            slice or duplicate.
+	 * @return whether the memory was freed.
+	 */
+	public static boolean release( final ByteBuffer buffer )
+	{
+		if ( releaser == null || buffer == null || !buffer.isDirect() )
+			return false;
+		try
+		{
+			releaser.release( buffer );
+			return true;
+		}
+		catch ( final Exception e )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Free the off-heap memory of all {@link BufferAccess BufferAccesses} of
+	 * an {@link ArrayImg} or {@link AbstractCellImg}, e.g., created by
+	 * {@link DirectArrayImgFactory}, {@link DirectCellImgFactory}, or
+	 * {@link MappedImgs}.
+	 * <p>
+	 * <em>The image must not be accessed afterwards. Doing so may crash the
+	 * virtual machine.</em>
+	 * </p>
+	 *
+	 * @return whether all memory was freed.
+	 */
+	public static boolean release( final NativeImg< ?, ? > img )
+	{
+		if ( img instanceof ArrayImg )
+			return release( ( ( ArrayImg< ?, ? > ) img ).update( null ) );
+
+		if ( img instanceof AbstractCellImg )
+		{
+			boolean released = true;
+			for ( final Cell< ? > cell : ( ( AbstractCellImg< ?, ?, ?, ? > ) img ).getCells() )
+				released &= release( cell.getData() );
+			return released;
+		}
+
+		throw new IllegalArgumentException( "Unsupported image: " + img.getClass().getName() );
+	}
+
+	private static boolean release( final Object access )
+	{
+		if ( access instanceof BufferAccess )
+			return release( ( ( BufferAccess ) access ).getBuffer() );
+		return false;
+	}
+
+	@FunctionalInterface
+	private interface Releaser
+	{
+		void release( ByteBuffer buffer ) throws Exception;
+	}
+
+	private static Releaser createReleaser()
+	{
+		try
+		{
+			// Java 9 and later
+			final Class< ? > unsafeClass = Class.forName( "sun.misc.Unsafe" );
+			final Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+			final Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+			theUnsafe.setAccessible( true );
+			final Object unsafe = theUnsafe.get( null );
+			return buffer -> invokeCleaner.invoke( unsafe, buffer );
+		}
+		catch ( final Exception e )
+		{}
+
+		try
+		{
+			// Java 8
+			final Method cleaner = Class.forName( "sun.nio.ch.DirectBuffer" ).getMethod( "cleaner" );
+			final Method clean = Class.forName( "sun.misc.Cleaner" ).getMethod( "clean" );
+			return buffer -> {
+				final Object c = cleaner.invoke( buffer );
+				if ( c != null )
+					clean.invoke( c );
+			};
+		}
+		catch ( final Exception e )
+		{}
+
+		return null;
+	}
+}
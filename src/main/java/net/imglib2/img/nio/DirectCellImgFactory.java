@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * Factory for {@link CellImg CellImgs} whose cells store their data off-heap
+ * in direct {@link ByteBuffer ByteBuffers} (in native byte order) instead of
+ * primitive arrays. This keeps large images out of the garbage collector's
+ * reach, and allows to hand the memory to native code. The memory can be freed
+ * explicitly by {@link DirectBuffers#release(net.imglib2.img.NativeImg)}.
+ * <p>
+ * The cell dimensions for a standard cell can be supplied in the constructor
+ * of the factory. If no cell dimensions are given, the factory creates cells
+ * of size <em>10 x 10 x ... x 10</em>.
+ * </p>
+ */
+public class DirectCellImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final int[] defaultCellDimensions;
+
+	public DirectCellImgFactory()
+	{
+		this( 10 );
+	}
+
+	public DirectCellImgFactory( final int... cellDimensions )
+	{
+		defaultCellDimensions = cellDimensions.clone();
+		CellImgFactory.verifyDimensions( defaultCellDimensions );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CellImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 1, ByteBufferAccess::new );
+	}
+
+	@Override
+	public CellImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 2, CharBufferAccess::new );
+	}
+
+	@Override
+	public CellImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 2, ShortBufferAccess::new );
+	}
+
+	@Override
+	public CellImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 4, IntBufferAccess::new );
+	}
+
+	@Override
+	public CellImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 8, LongBufferAccess::new );
+	}
+
+	@Override
+	public CellImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 4, FloatBufferAccess::new );
+	}
+
+	@Override
+	public CellImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, entitiesPerPixel, 8, DoubleBufferAccess::new );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectCellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A > CellImg< T, A > createInstance( final long[] dimensions, final Fraction entitiesPerPixel, final int bytesPerEntity, final Function< ByteBuffer, A > wrap )
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+
+		final int n = dimensions.length;
+		final int[] cellDimensions = CellImgFactory.getCellDimensions( defaultCellDimensions, n, entitiesPerPixel );
+		if ( entitiesPerPixel.mulCeil( Intervals.numElements( cellDimensions ) ) * bytesPerEntity > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of bytes in cell too large. Use smaller cell size." );
+
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		final ListImg< Cell< A > > cells = BufferCells.create( grid, ( cellMin, cellDims ) -> {
+			final long numBytes = entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) * bytesPerEntity;
+			return wrap.apply( DirectBuffers.allocate( numBytes ) );
+		} );
+
+		return new CellImg<>( this, grid, cells, entitiesPerPixel );
+	}
+}
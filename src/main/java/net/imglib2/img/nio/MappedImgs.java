@@ -0,0 +1,344 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+
+/**
+ * Factory methods that open raw image files as {@link ArrayImg ArrayImgs} or
+ * {@link CellImg CellImgs} without copying the data onto the Java heap. The
+ * file is memory-mapped and pixels are accessed through the
+ * {@link net.imglib2.img.basictypeaccess.nio buffer-backed accesses}, such
+ * that the operating system pages data in (and, for
+ * {@link MapMode#READ_WRITE}, out) on demand.
+ * <p>
+ * The file is expected to contain the pixels in flat iteration order, i.e.,
+ * dimension 0 varies fastest, starting at byte {@code offset}. A single mapped
+ * region cannot be larger than {@code Integer.MAX_VALUE} bytes. Larger files
+ * are opened as {@link CellImg}, where each cell maps a contiguous slab of the
+ * file.
+ * </p>
+ * <p>
+ * Mappings are released when the image is garbage-collected. Writes to a
+ * {@link MapMode#READ_ONLY} image throw
+ * {@link java.nio.ReadOnlyBufferException}.
+ * </p>
+ */
+public final class MappedImgs
+{
+	private MappedImgs()
+	{}
+
+	/**
+	 * The default upper bound for the size of cells of images opened with
+	 * {@link #cellImg(Path, long, ByteOrder, MapMode, NativeType, long...)}.
+	 */
+	public static final long DEFAULT_MAX_CELL_BYTES = Integer.MAX_VALUE;
+
+	/**
+	 * Map a raw file as an {@link ArrayImg}.
+	 *
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            byte offset of the first pixel in the file.
+	 * @param order
+	 *            byte order of the pixel data.
+	 * @param mode
+	 *            how the file is mapped.
+	 * @param type
+	 *            the pixel type.
+	 * @param dimensions
+	 *            the image dimensions.
+	 * @throws IllegalArgumentException
+	 *             if the image data is larger than {@code Integer.MAX_VALUE}
+	 *             bytes.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < T extends NativeType< T > > ArrayImg< T, ? > arrayImg( final Path file, final long offset, final ByteOrder order, final MapMode mode, final T type, final long... dimensions ) throws IOException
+	{
+		return ( ArrayImg< T, ? > ) create( file, offset, order, mode, type, dimensions, -1 );
+	}
+
+	/**
+	 * Map a raw file as a {@link CellImg} whose cells are at most
+	 * {@link #DEFAULT_MAX_CELL_BYTES} large.
+	 *
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            byte offset of the first pixel in the file.
+	 * @param order
+	 *            byte order of the pixel data.
+	 * @param mode
+	 *            how the file is mapped.
+	 * @param type
+	 *            the pixel type.
+	 * @param dimensions
+	 *            the image dimensions.
+	 */
+	public static < T extends NativeType< T > > CellImg< T, ? > cellImg( final Path file, final long offset, final ByteOrder order, final MapMode mode, final T type, final long... dimensions ) throws IOException
+	{
+		return cellImg( file, offset, order, mode, type, dimensions, DEFAULT_MAX_CELL_BYTES );
+	}
+
+	/**
+	 * Map a raw file as a {@link CellImg}. Every cell maps a contiguous region
+	 * of the file. Cells span the full image in the lower dimensions, and as
+	 * many hyperplanes in the next dimension as fit into
+	 * {@code maxCellBytes}.
+	 *
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            byte offset of the first pixel in the file.
+	 * @param order
+	 *            byte order of the pixel data.
+	 * @param mode
+	 *            how the file is mapped.
+	 * @param type
+	 *            the pixel type.
+	 * @param dimensions
+	 *            the image dimensions.
+	 * @param maxCellBytes
+	 *            upper bound for the size of a cell in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the pixel type does not use a whole number of entities
+	 *             per pixel, or if a single pixel is larger than
+	 *             {@code maxCellBytes}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < T extends NativeType< T > > CellImg< T, ? > cellImg( final Path file, final long offset, final ByteOrder order, final MapMode mode, final T type, final long[] dimensions, final long maxCellBytes ) throws IOException
+	{
+		if ( maxCellBytes <= 0 )
+			throw new IllegalArgumentException( "maxCellBytes <= 0" );
+		return ( CellImg< T, ? > ) create( file, offset, order, mode, type, dimensions, maxCellBytes );
+	}
+
+	private static < T extends NativeType< T > > NativeImg< T, ? > create( final Path file, final long offset, final ByteOrder order, final MapMode mode, final T type, final long[] dimensions, final long maxCellBytes ) throws IOException
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+		final StandardOpenOption[] options = mode == MapMode.READ_WRITE
+				? new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE }
+				: new StandardOpenOption[] { StandardOpenOption.READ };
+
+		// NB: mappings remain valid after the channel is closed
+		try (final FileChannel channel = FileChannel.open( file, options ))
+		{
+			return type.createSuitableNativeImg( new MappingFactory< T >( channel, offset, order, mode, maxCellBytes ), dimensions );
+		}
+		catch ( final UncheckedIOException e )
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Creates images on memory-mapped regions of a file, rather than
+	 * allocating new storage. Used to dispatch on the access type required by
+	 * the pixel type.
+	 */
+	private static final class MappingFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+	{
+		private final FileChannel channel;
+
+		private final long offset;
+
+		private final ByteOrder order;
+
+		private final MapMode mode;
+
+		/**
+		 * Maximum size of cells in bytes, or -1 to create an ArrayImg.
+		 */
+		private final long maxCellBytes;
+
+		MappingFactory( final FileChannel channel, final long offset, final ByteOrder order, final MapMode mode, final long maxCellBytes )
+		{
+			this.channel = channel;
+			this.offset = offset;
+			this.order = order;
+			this.mode = mode;
+			this.maxCellBytes = maxCellBytes;
+		}
+
+		@Override
+		public NativeImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 1, ByteBufferAccess::new );
+		}
+
+		@Override
+		public NativeImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 2, CharBufferAccess::new );
+		}
+
+		@Override
+		public NativeImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 2, ShortBufferAccess::new );
+		}
+
+		@Override
+		public NativeImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 4, IntBufferAccess::new );
+		}
+
+		@Override
+		public NativeImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 8, LongBufferAccess::new );
+		}
+
+		@Override
+		public NativeImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 4, FloatBufferAccess::new );
+		}
+
+		@Override
+		public NativeImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return create( dimensions, entitiesPerPixel, 8, DoubleBufferAccess::new );
+		}
+
+		/**
+		 * A {@link MappingFactory} maps one region of a file, through a channel
+		 * that is closed once the image is created, so it cannot be retyped.
+		 */
+		@Override
+		public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+		{
+			throw new IncompatibleTypeException( this, "Mapping factories cannot be retyped. Use MappedImgs to map a file as " + type.getClass().getCanonicalName() + "." );
+		}
+
+		private < A > NativeImg< T, A > create( final long[] dimensions, final Fraction entitiesPerPixel, final int bytesPerEntity, final Function< ByteBuffer, A > wrap )
+		{
+			return maxCellBytes < 0
+					? createArrayImg( dimensions, entitiesPerPixel, bytesPerEntity, wrap )
+					: createCellImg( dimensions, entitiesPerPixel, bytesPerEntity, wrap );
+		}
+
+		private < A > ArrayImg< T, A > createArrayImg( final long[] dimensions, final Fraction entitiesPerPixel, final int bytesPerEntity, final Function< ByteBuffer, A > wrap )
+		{
+			final long numBytes = entitiesPerPixel.mulCeil( Intervals.numElements( dimensions ) ) * bytesPerEntity;
+			if ( numBytes > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Image data too large for ArrayImg, use a CellImg instead: " + numBytes + " > " + Integer.MAX_VALUE + " bytes" );
+
+			return new ArrayImg<>( wrap.apply( map( offset, numBytes ) ), dimensions, entitiesPerPixel );
+		}
+
+		private < A > CellImg< T, A > createCellImg( final long[] dimensions, final Fraction entitiesPerPixel, final int bytesPerEntity, final Function< ByteBuffer, A > wrap )
+		{
+			if ( entitiesPerPixel.getDenominator() != 1 )
+				throw new IllegalArgumentException( "Pixel types with fractional entities per pixel are not supported: " + entitiesPerPixel.getRatio() );
+
+			final long bytesPerPixel = entitiesPerPixel.getNumerator() * bytesPerEntity;
+			final long maxPixels = Math.min( maxCellBytes, Integer.MAX_VALUE ) / bytesPerPixel;
+			if ( maxPixels < 1 )
+				throw new IllegalArgumentException( "maxCellBytes is smaller than a single pixel" );
+
+			// Take the full extent of the lower dimensions, as many hyperplanes
+			// as possible in the next dimension, and size 1 in all higher
+			// dimensions. Cells are then contiguous regions of the file.
+			final int n = dimensions.length;
+			final int[] cellDimensions = new int[ n ];
+			long numPixels = 1;
+			int d = 0;
+			for ( ; d < n && dimensions[ d ] <= maxPixels / numPixels; ++d )
+			{
+				cellDimensions[ d ] = ( int ) dimensions[ d ];
+				numPixels *= dimensions[ d ];
+			}
+			if ( d < n )
+				cellDimensions[ d++ ] = ( int ) ( maxPixels / numPixels );
+			for ( ; d < n; ++d )
+				cellDimensions[ d ] = 1;
+
+			final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+			final ListImg< Cell< A > > cells = BufferCells.create( grid, ( cellMin, cellDims ) -> {
+				final long cellOffset = offset + IntervalIndexer.positionToIndex( cellMin, dimensions ) * bytesPerPixel;
+				final long cellBytes = Intervals.numElements( cellDims ) * bytesPerPixel;
+				return wrap.apply( map( cellOffset, cellBytes ) );
+			} );
+
+			return new CellImg<>( new CellImgFactory< T >( cellDimensions ), grid, cells, entitiesPerPixel );
+		}
+
+		private ByteBuffer map( final long position, final long size )
+		{
+			try
+			{
+				return channel.map( mode, position, size ).order( order );
+			}
+			catch ( final IOException e )
+			{
+				throw new UncheckedIOException( e );
+			}
+		}
+	}
+}
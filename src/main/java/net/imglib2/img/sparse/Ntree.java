@@ -34,8 +34,20 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
 /**
  * N-dimensional equivalent of a quad/oct-tree.
+ * <p>
+ * The tree can be read and written concurrently. Reads
+ * ({@link #getNode(long[])}) do not lock. Node values and children are
+ * volatile, and a children array is filled completely before it is
+ * published. Writes lock only the subtree they modify. The subtrees at depth
+ * {@link #stripeDepth} are guarded by a fixed set of lock stripes, selected by
+ * the path to the subtree. Changes above that depth (splitting or merging the
+ * top-level nodes) exclusively lock the whole tree.
+ * </p>
  * 
  * @author Tobias Pietzsch
  */
@@ -45,11 +57,11 @@ public final class Ntree< T extends Comparable< T >>
 	public static final class NtreeNode< T >
 	{
 
-		private T value;
+		private volatile T value;
 
 		private final NtreeNode< T > parent;
 
-		private NtreeNode< T >[] children;
+		private volatile NtreeNode< T >[] children;
 
 		public NtreeNode( final NtreeNode< T > parent, final T value )
 		{
@@ -102,13 +114,33 @@ public final class Ntree< T extends Comparable< T >>
 	/**
 	 * Root of the tree
 	 */
-	NtreeNode< T > root;
+	volatile NtreeNode< T > root;
 
 	/**
 	 * dimensions of tree
 	 */
 	final long[] dimensions;
 
+	/**
+	 * number of lock stripes (a power of two).
+	 */
+	private static final int NUM_STRIPES = 64;
+
+	/**
+	 * Nodes at this depth (and their subtrees) are guarded by the lock stripe
+	 * selected by their path from the root. Nodes above this depth are only
+	 * split or merged while holding the write lock of {@link #treeLock}.
+	 */
+	final int stripeDepth;
+
+	/**
+	 * Held (shared) while writing within a stripe, and exclusively while
+	 * changing the nodes above {@link #stripeDepth}.
+	 */
+	private final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+
+	private final Object[] stripes;
+
 	// /**
 	// * KNIME requirements, empty constructor for fast serialization
 	// */
@@ -142,6 +174,29 @@ public final class Ntree< T extends Comparable< T >>
 		this.numChildren = 1 << n;
 
 		this.root = new NtreeNode< T >( null, value );
+
+		this.stripeDepth = stripeDepth( n, numTreeLevels );
+		this.stripes = createStripes();
+	}
+
+	/**
+	 * @return the smallest depth with at least {@link #NUM_STRIPES} nodes, but
+	 *         above the level of single pixels (if the tree is that deep).
+	 */
+	private static int stripeDepth( final int n, final int numTreeLevels )
+	{
+		int depth = 0;
+		while ( depth < numTreeLevels - 2 && ( long ) depth * n < Integer.numberOfTrailingZeros( NUM_STRIPES ) )
+			++depth;
+		return depth;
+	}
+
+	private static Object[] createStripes()
+	{
+		final Object[] stripes = new Object[ NUM_STRIPES ];
+		for ( int i = 0; i < NUM_STRIPES; ++i )
+			stripes[ i ] = new Object();
+		return stripes;
 	}
 
 	/**
@@ -172,7 +227,17 @@ public final class Ntree< T extends Comparable< T >>
 		n = ntree.n;
 		numTreeLevels = ntree.numTreeLevels;
 		numChildren = ntree.numChildren;
-		root = copyRecursively( ntree.root, null );
+		stripeDepth = ntree.stripeDepth;
+		stripes = createStripes();
+		ntree.treeLock.writeLock().lock();
+		try
+		{
+			root = copyRecursively( ntree.root, null );
+		}
+		finally
+		{
+			ntree.treeLock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -184,24 +249,59 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return the lowest-level node containing position.
 	 */
-	synchronized NtreeNode< T > getNode( final long[] position )
+	NtreeNode< T > getNode( final long[] position )
 	{
 		NtreeNode< T > current = root;
 		for ( int l = numTreeLevels - 2; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
+			final NtreeNode< T >[] children = current.children;
+			if ( children == null )
 				break;
 
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = children[ childIndex( position, l ) ];
 		}
 		return current;
 	}
 
+	/**
+	 * @return the index of the child containing position, of a node at level
+	 *         {@code l + 1}.
+	 */
+	private int childIndex( final long[] position, final int l )
+	{
+		final long bitmask = 1 << l;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * @return the lock stripe guarding the subtree at {@link #stripeDepth}
+	 *         that contains position.
+	 */
+	private Object stripe( final long[] position )
+	{
+		int index = 0;
+		for ( int l = numTreeLevels - 2; l >= numTreeLevels - 1 - stripeDepth; --l )
+			index = ( index << n ) | childIndex( position, l );
+		return stripes[ index & ( NUM_STRIPES - 1 ) ];
+	}
+
+	/**
+	 * Split a leaf node into children with the same value as the node.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void split( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = new NtreeNode[ numChildren ];
+		final T value = node.getValue();
+		for ( int i = 0; i < numChildren; ++i )
+			children[ i ] = new NtreeNode< T >( node, value );
+		node.children = children;
+	}
+
 	/**
 	 * Create a node containing only position (if it does not exist already).
 	 * This may insert nodes at several levels in the tree.
@@ -210,27 +310,24 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return node containing exactly position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNode( final long[] position )
+	NtreeNode< T > createNode( final long[] position )
 	{
-		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		treeLock.writeLock().lock();
+		try
 		{
-			if ( !current.hasChildren() )
+			NtreeNode< T > current = root;
+			for ( int l = numTreeLevels - 2; l >= 0; --l )
 			{
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				if ( !current.hasChildren() )
+					split( current );
+				current = current.children[ childIndex( position, l ) ];
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			return current;
+		}
+		finally
+		{
+			treeLock.writeLock().unlock();
 		}
-		return current;
 	}
 
 	/**
@@ -245,33 +342,105 @@ public final class Ntree< T extends Comparable< T >>
 	 *            value to store at position.
 	 * @return node containing position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNodeWithValue( final long[] position, final T value )
+	NtreeNode< T > createNodeWithValue( final long[] position, final T value )
+	{
+		// Nothing to do (and nothing to lock) if the value is already set.
+		final NtreeNode< T > existing = getNode( position );
+		if ( existing.getValue().compareTo( value ) == 0 )
+			return existing;
+
+		// Try to write holding only the lock stripe of position. This fails
+		// (returns null) if nodes above stripeDepth need to be split.
+		NtreeNode< T > node;
+		treeLock.readLock().lock();
+		try
+		{
+			synchronized ( stripe( position ) )
+			{
+				node = createNodeWithValue( position, value, stripeDepth );
+			}
+		}
+		finally
+		{
+			treeLock.readLock().unlock();
+		}
+
+		if ( node != null && !mayMergeParent( node ) )
+			return node;
+
+		// Split or merge above stripeDepth.
+		treeLock.writeLock().lock();
+		try
+		{
+			if ( node == null )
+				return createNodeWithValue( position, value, 0 );
+			else
+				return mergeUpwards( node );
+		}
+		finally
+		{
+			treeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Set the value at position, splitting and merging only nodes at depth
+	 * {@code minDepth} or deeper.
+	 *
+	 * @return node containing position, or {@code null} if a node above
+	 *         {@code minDepth} would need to be split.
+	 */
+	private NtreeNode< T > createNodeWithValue( final long[] position, final T value, final int minDepth )
 	{
 		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		for ( int l = numTreeLevels - 2, depth = 0; l >= 0; --l, ++depth )
 		{
 			if ( !current.hasChildren() )
 			{
 				if ( current.getValue().compareTo( value ) == 0 )
 					return current;
 
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				if ( depth < minDepth )
+					return null;
+
+				split( current );
 			}
 
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = current.children[ childIndex( position, l ) ];
 		}
 		if ( current.getValue().compareTo( value ) == 0 )
 			return current;
 		current.setValue( value );
-		return mergeUpwards( current );
+		return mergeUpwards( current, minDepth );
+	}
+
+	/**
+	 * Check whether all children of the parent of node are leaves with the
+	 * same value. Without holding locks, this is a hint only, but concurrent
+	 * writers that make siblings uniform each check after their write, so at
+	 * least one of them will see the final state.
+	 */
+	private boolean mayMergeParent( final NtreeNode< T > node )
+	{
+		final NtreeNode< T > parent = node.parent;
+		if ( parent == null )
+			return false;
+		final NtreeNode< T >[] children = parent.children;
+		if ( children == null )
+			return false;
+		final T value = node.getValue();
+		for ( final NtreeNode< T > child : children )
+			if ( child.hasChildren() || child.getValue().compareTo( value ) != 0 )
+				return false;
+		return true;
+	}
+
+	private int depth( NtreeNode< T > node )
+	{
+		int depth = 0;
+		while ( ( node = node.parent ) != null )
+			++depth;
+		return depth;
 	}
 
 	/**
@@ -285,21 +454,167 @@ public final class Ntree< T extends Comparable< T >>
 	 */
 	NtreeNode< T > mergeUpwards( final NtreeNode< T > node )
 	{
-		final NtreeNode< T > parent = node.parent;
-		if ( parent == null )
-			return node;
-		final NtreeNode< T > child0 = parent.children[ 0 ];
-		if ( child0.hasChildren() )
-			return node;
-		for ( int i = 1; i < numChildren; ++i )
+		return mergeUpwards( node, 0 );
+	}
+
+	/**
+	 * Like {@link #mergeUpwards(NtreeNode)}, but only merge into nodes at
+	 * depth {@code minDepth} or deeper.
+	 */
+	private NtreeNode< T > mergeUpwards( final NtreeNode< T > node, final int minDepth )
+	{
+		NtreeNode< T > current = node;
+		int depth = minDepth > 0 ? depth( node ) : Integer.MAX_VALUE;
+		while ( depth > minDepth )
+		{
+			final NtreeNode< T > parent = current.parent;
+			if ( parent == null )
+				return current;
+			final NtreeNode< T >[] children = parent.children;
+			if ( children == null )
+				return current;
+			final NtreeNode< T > child0 = children[ 0 ];
+			if ( child0.hasChildren() )
+				return current;
+			for ( int i = 1; i < numChildren; ++i )
+			{
+				final NtreeNode< T > child = children[ i ];
+				if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
+					return current;
+			}
+			// publish the value before removing the children, so that readers
+			// never see a leaf with an outdated value
+			parent.setValue( child0.getValue() );
+			parent.children = null;
+			current = parent;
+			--depth;
+		}
+		return current;
+	}
+
+	/**
+	 * Replace the contents of the tree by the given pixel values. The tree is
+	 * constructed bottom-up, such that every subtree of uniform value is a
+	 * single leaf. This is much faster than writing the pixels one by one,
+	 * which splits nodes down to the leaves and merges them again.
+	 * <p>
+	 * {@code values} is called exactly once for every pixel, in the order of
+	 * the tree (recursively by child index, i.e., Morton order). The position
+	 * array passed to it is reused and must not be retained.
+	 * </p>
+	 * 
+	 * @param values
+	 *            maps a pixel position to its value.
+	 */
+	public void build( final Function< long[], T > values )
+	{
+		final NtreeNode< T > node = build( null, numTreeLevels - 1, new long[ n ], values );
+		treeLock.writeLock().lock();
+		try
 		{
-			final NtreeNode< T > child = parent.children[ i ];
-			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
-				return node;
+			root = node;
 		}
-		parent.setValue( child0.getValue() );
-		parent.children = null;
-		return mergeUpwards( parent );
+		finally
+		{
+			treeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Build the subtree covering the pixels from {@code min} to
+	 * {@code min + 2^level - 1}. Children that lie completely outside the
+	 * image are ignored when deciding whether the subtree is uniform.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private NtreeNode< T > build( final NtreeNode< T > parent, final int level, final long[] min, final Function< long[], T > values )
+	{
+		if ( level == 0 )
+			return new NtreeNode< T >( parent, values.apply( min ) );
+
+		final NtreeNode< T > node = new NtreeNode< T >( parent, null );
+		final NtreeNode< T >[] children = new NtreeNode[ numChildren ];
+		final long size = 1l << ( level - 1 );
+		boolean uniform = true;
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			boolean inside = true;
+			for ( int d = 0; d < n; ++d )
+				if ( ( i & ( 1 << d ) ) != 0 )
+				{
+					min[ d ] += size;
+					inside &= min[ d ] < dimensions[ d ];
+				}
+
+			// child 0 is always inside, because node is
+			if ( inside )
+			{
+				final NtreeNode< T > child = build( node, level - 1, min, values );
+				children[ i ] = child;
+				uniform &= !child.hasChildren() && child.value.compareTo( children[ 0 ].value ) == 0;
+			}
+
+			for ( int d = 0; d < n; ++d )
+				if ( ( i & ( 1 << d ) ) != 0 )
+					min[ d ] -= size;
+		}
+
+		node.value = children[ 0 ].value;
+		if ( !uniform )
+		{
+			// children outside the image are never accessed
+			for ( int i = 0; i < numChildren; ++i )
+				if ( children[ i ] == null )
+					children[ i ] = new NtreeNode< T >( node, node.value );
+			node.children = children;
+		}
+		return node;
+	}
+
+	/**
+	 * Merge all subtrees whose leaves have the same value into single leaves.
+	 * Writes merge nodes whenever possible, but nodes that were split by
+	 * {@link #createNode(long[])}, or by writes that were later undone
+	 * concurrently, may remain. This restores the most compact
+	 * representation.
+	 * 
+	 * @return the number of nodes that were removed.
+	 */
+	public long compact()
+	{
+		treeLock.writeLock().lock();
+		try
+		{
+			return compact( root );
+		}
+		finally
+		{
+			treeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Compact the subtree of node.
+	 * 
+	 * @return the number of nodes removed.
+	 */
+	private long compact( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = node.children;
+		if ( children == null )
+			return 0;
+
+		long removed = 0;
+		for ( final NtreeNode< T > child : children )
+			removed += compact( child );
+
+		final T value = children[ 0 ].getValue();
+		for ( final NtreeNode< T > child : children )
+			if ( child.hasChildren() || child.getValue().compareTo( value ) != 0 )
+				return removed;
+
+		node.setValue( value );
+		node.children = null;
+		return removed + numChildren;
 	}
 
 	/**
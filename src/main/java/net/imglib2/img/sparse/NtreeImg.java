@@ -109,6 +109,15 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		return cursor();
 	}
 
+	/**
+	 * @return a cursor over the homogeneous regions (leaf nodes) of the
+	 *         image.
+	 */
+	public NtreeRegionCursor< T > regionCursor()
+	{
+		return new NtreeRegionCursor< T >( this );
+	}
+
 	@Override
 	public ImgFactory< T > factory()
 	{
@@ -131,6 +140,17 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		return copy;
 	}
 
+	/**
+	 * Merge all uniform subtrees of the underlying {@link Ntree}.
+	 * 
+	 * @return the number of nodes that were removed.
+	 * @see Ntree#compact()
+	 */
+	public long compact()
+	{
+		return data.getCurrentStorageNtree().compact();
+	}
+
 	@Override
 	public FlatIterationOrder iterationOrder()
 	{
@@ -34,11 +34,17 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.Arrays;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
 
 /**
  * @author Tobias Pietzsch
@@ -52,6 +58,46 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		return ( NtreeImg< T, ? > ) type.createSuitableNativeImg( this, dim );
 	}
 
+	/**
+	 * Create a {@link NtreeImg} containing a copy of {@code source}. The tree
+	 * is built bottom-up (see {@link Ntree#build}), so uniform regions of
+	 * {@code source} are represented by single nodes, without splitting and
+	 * merging nodes for every pixel.
+	 * 
+	 * @param source
+	 *            the pixel values. Its min is mapped to the origin of the
+	 *            created image.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public NtreeImg< T, ? > create( final RandomAccessibleInterval< T > source )
+	{
+		final T type = Util.getTypeFromInterval( source );
+		final NtreeImg< T, ? > img = create( Intervals.dimensionsAsLongArray( source ), type );
+		copy( source, ( NtreeImg ) img );
+		return img;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private < L extends Comparable< L >, A extends NtreeAccess< L, A > > void copy( final RandomAccessibleInterval< T > source, final NtreeImg< T, A > img )
+	{
+		// Pixel values are converted to tree values by writing them to a
+		// single-pixel image of the same type and reading its root node.
+		final long[] one = new long[ img.numDimensions() ];
+		Arrays.fill( one, 1 );
+		final NtreeImg< T, A > pixel = ( NtreeImg< T, A > ) create( one, img.firstElement() );
+		final T t = pixel.firstElement();
+		final Ntree< L > pixelTree = pixel.data.getCurrentStorageNtree();
+
+		final RandomAccess< T > access = source.randomAccess();
+		final long[] min = Intervals.minAsLongArray( source );
+		img.data.getCurrentStorageNtree().build( position -> {
+			for ( int d = 0; d < min.length; ++d )
+				access.setPosition( min[ d ] + position[ d ], d );
+			t.set( access.get() );
+			return pixelTree.getRootNode().getValue();
+		} );
+	}
+
 	@Override
 	public NtreeImg< T, ByteNtree > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
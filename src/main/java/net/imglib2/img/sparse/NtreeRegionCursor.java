@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.NoSuchElementException;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Iterator;
+import net.imglib2.Sampler;
+import net.imglib2.img.sparse.Ntree.NtreeNode;
+import net.imglib2.img.sparse.NtreeImg.PositionProvider;
+import net.imglib2.type.NativeType;
+
+/**
+ * Iterates the homogeneous regions of a {@link NtreeImg}, i.e., the leaf
+ * nodes of its {@link Ntree}. At each step, the cursor is the
+ * {@link net.imglib2.Interval} covered by the current node (clipped to the
+ * image), and {@link #get()} is the value of all pixels in it.
+ * <p>
+ * Reductions over the image can therefore run in time proportional to the
+ * number of nodes instead of the number of pixels. For example, the sum of
+ * an {@code IntType} image is the sum of
+ * {@code c.get().get() * c.size()} over all regions. Regions are visited in
+ * the order of the tree (Morton order), not in flat iteration order.
+ * </p>
+ * <p>
+ * Like the other accessors of {@link NtreeImg}, the cursor does not lock the
+ * tree. If the image is modified during iteration, regions may reflect the
+ * tree before or after the modification.
+ * </p>
+ */
+public final class NtreeRegionCursor< T extends NativeType< T > > extends AbstractInterval implements Iterator, Sampler< T >, PositionProvider
+{
+	private final NtreeImg< T, ? > img;
+
+	private final Ntree< ? > tree;
+
+	private final T type;
+
+	/**
+	 * min of the current region; position of the linked type.
+	 */
+	private final long[] position;
+
+	/**
+	 * number of pixels in the current region.
+	 */
+	private long size;
+
+	/**
+	 * nodes that remain to be visited, and their levels and min coordinates.
+	 */
+	private final NtreeNode< ? >[] stackNodes;
+
+	private final int[] stackLevels;
+
+	private final long[] stackMins;
+
+	private int stackSize;
+
+	/**
+	 * min of the node that is expanded.
+	 */
+	private final long[] nodeMin;
+
+	public NtreeRegionCursor( final NtreeImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+		this.img = img;
+		this.tree = img.data.getCurrentStorageNtree();
+		this.type = img.createLinkedType();
+		this.position = new long[ n ];
+		this.nodeMin = new long[ n ];
+
+		// at most numChildren - 1 siblings are waiting on each level, plus the
+		// children of the current node
+		final int capacity = tree.numTreeLevels * tree.numChildren;
+		stackNodes = new NtreeNode< ? >[ capacity ];
+		stackLevels = new int[ capacity ];
+		stackMins = new long[ capacity * n ];
+
+		type.updateContainer( this );
+		reset();
+	}
+
+	private NtreeRegionCursor( final NtreeRegionCursor< T > cursor )
+	{
+		super( cursor );
+		this.img = cursor.img;
+		this.tree = cursor.tree;
+		this.type = img.createLinkedType();
+		this.position = cursor.position.clone();
+		this.nodeMin = new long[ n ];
+		this.size = cursor.size;
+		stackNodes = cursor.stackNodes.clone();
+		stackLevels = cursor.stackLevels.clone();
+		stackMins = cursor.stackMins.clone();
+		stackSize = cursor.stackSize;
+
+		type.updateContainer( this );
+	}
+
+	/**
+	 * @return the value of all pixels in the current region.
+	 */
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	/**
+	 * @return the number of pixels in the current region.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public void reset()
+	{
+		stackSize = 0;
+		for ( int d = 0; d < n; ++d )
+			nodeMin[ d ] = 0;
+		push( tree.root, tree.numTreeLevels - 1, 0, 0 );
+		size = 0;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return stackSize > 0;
+	}
+
+	@Override
+	public void fwd()
+	{
+		while ( stackSize > 0 )
+		{
+			--stackSize;
+			final NtreeNode< ? > node = stackNodes[ stackSize ];
+			final int level = stackLevels[ stackSize ];
+			final int offset = stackSize * n;
+			stackNodes[ stackSize ] = null;
+
+			for ( int d = 0; d < n; ++d )
+				nodeMin[ d ] = stackMins[ offset + d ];
+
+			final NtreeNode< ? >[] children = node.getChildren();
+			if ( children == null )
+			{
+				size = 1;
+				for ( int d = 0; d < n; ++d )
+				{
+					min[ d ] = nodeMin[ d ];
+					max[ d ] = Math.min( nodeMin[ d ] + ( 1l << level ) - 1, img.max( d ) );
+					position[ d ] = nodeMin[ d ];
+					size *= max[ d ] - min[ d ] + 1;
+				}
+				return;
+			}
+
+			// push in reverse order, to visit child 0 first
+			final long childSize = 1l << ( level - 1 );
+			for ( int i = children.length - 1; i >= 0; --i )
+				push( children[ i ], level - 1, i, childSize );
+		}
+		throw new NoSuchElementException();
+	}
+
+	/**
+	 * Push child {@code i} of the node at {@link #nodeMin}, unless it lies
+	 * outside the image.
+	 */
+	private void push( final NtreeNode< ? > child, final int level, final int i, final long childSize )
+	{
+		final int offset = stackSize * n;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long childMin = nodeMin[ d ] + ( ( ( i >> d ) & 1 ) == 0 ? 0 : childSize );
+			if ( childMin >= img.dimension( d ) )
+				return;
+			stackMins[ offset + d ] = childMin;
+		}
+		stackNodes[ stackSize ] = child;
+		stackLevels[ stackSize ] = level;
+		++stackSize;
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		for ( long i = 0; i < steps; ++i )
+			fwd();
+	}
+
+	@Override
+	public NtreeRegionCursor< T > copy()
+	{
+		return new NtreeRegionCursor< T >( this );
+	}
+
+	@Override
+	public long[] getPosition()
+	{
+		return position;
+	}
+}
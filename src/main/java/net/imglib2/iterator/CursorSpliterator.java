@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.iterator;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+
+/**
+ * A {@link Spliterator} over the elements of an {@link IterableInterval}.
+ * <p>
+ * A {@link CursorSpliterator} covers a range of indices in the iteration
+ * order of the {@link IterableInterval}. {@link #trySplit()} halves that range
+ * and gives each part its own {@link Cursor#copyCursor() cursor copy}, moved to
+ * the start of the range by {@link Cursor#reset()} and
+ * {@link Cursor#jumpFwd(long)}. This is efficient
+ * for containers with constant-time {@code jumpFwd}, such as
+ * {@link net.imglib2.img.array.ArrayImg} and
+ * {@link net.imglib2.img.planar.PlanarImg}. Optionally, splits can be
+ * restricted to a sorted set of indices, e.g., the cell boundaries of a
+ * {@link net.imglib2.img.cell.CellImg}.
+ * </p>
+ * <p>
+ * Like the {@link Cursor} it wraps, a {@link CursorSpliterator} passes the
+ * same (proxy) element object to every action. Elements must be copied if
+ * they are kept beyond the action.
+ * </p>
+ *
+ * @param <T>
+ */
+public class CursorSpliterator< T > implements Spliterator< T >
+{
+	private Cursor< T > cursor;
+
+	/**
+	 * index of the next element
+	 */
+	private long index;
+
+	/**
+	 * index after the last element
+	 */
+	private final long end;
+
+	/**
+	 * sorted indices where splits are allowed, or {@code null} if splits are
+	 * allowed anywhere.
+	 */
+	private final long[] splitPoints;
+
+	private CursorSpliterator( final Cursor< T > cursor, final long index, final long end, final long[] splitPoints )
+	{
+		this.cursor = cursor;
+		this.index = index;
+		this.end = end;
+		this.splitPoints = splitPoints;
+	}
+
+	/**
+	 * Create a {@link Spliterator} over all elements of {@code iterable} that
+	 * may split at any index.
+	 */
+	public CursorSpliterator( final IterableInterval< T > iterable )
+	{
+		this( iterable.cursor(), 0, iterable.size(), null );
+	}
+
+	/**
+	 * Create a {@link Spliterator} over all elements of {@code iterable} that
+	 * only splits at the given indices.
+	 *
+	 * @param splitPoints
+	 *            ascending indices in iteration order where the iteration may
+	 *            be split.
+	 */
+	public CursorSpliterator( final IterableInterval< T > iterable, final long[] splitPoints )
+	{
+		this( iterable.cursor(), 0, iterable.size(), splitPoints );
+	}
+
+	@Override
+	public boolean tryAdvance( final Consumer< ? super T > action )
+	{
+		if ( index >= end )
+			return false;
+		cursor.fwd();
+		++index;
+		action.accept( cursor.get() );
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining( final Consumer< ? super T > action )
+	{
+		final Cursor< T > c = cursor;
+		for ( long i = end - index; i > 0; --i )
+		{
+			c.fwd();
+			action.accept( c.get() );
+		}
+		index = end;
+	}
+
+	@Override
+	public Spliterator< T > trySplit()
+	{
+		final long split = splitIndex();
+		if ( split <= index || split >= end )
+			return null;
+
+		final CursorSpliterator< T > prefix = new CursorSpliterator<>( cursor, index, split, splitPoints );
+		// not all cursors keep their position when copied
+		cursor = cursor.copyCursor();
+		cursor.reset();
+		cursor.jumpFwd( split );
+		index = split;
+		return prefix;
+	}
+
+	private long splitIndex()
+	{
+		final long mid = ( index + end ) >>> 1;
+		if ( splitPoints == null )
+			return mid;
+
+		final int i = Arrays.binarySearch( splitPoints, mid );
+		if ( i >= 0 )
+			return mid;
+
+		// the closest allowed split point inside (index, end)
+		final int above = -i - 1;
+		final long upper = above < splitPoints.length ? splitPoints[ above ] : end;
+		final long lower = above > 0 ? splitPoints[ above - 1 ] : index;
+		if ( lower > index && ( upper >= end || mid - lower <= upper - mid ) )
+			return lower;
+		return upper;
+	}
+
+	@Override
+	public long estimateSize()
+	{
+		return end - index;
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return ORDERED | SIZED | SUBSIZED | NONNULL;
+	}
+}
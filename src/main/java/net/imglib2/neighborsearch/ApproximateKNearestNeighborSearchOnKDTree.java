@@ -0,0 +1,442 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Approximate {@link KNearestNeighborSearch} search for kd-trees.
+ * <p>
+ * Subtrees are searched best-bin-first, that is, in order of their (lower
+ * bound) distance to the reference point. Two parameters trade accuracy for
+ * speed:
+ * <ul>
+ * <li>{@code epsilon}: A subtree is skipped unless it may contain points
+ * closer than {@code 1 / (1 + epsilon)} times the distance of the current
+ * k-th nearest neighbor. Each neighbor found is then within
+ * {@code (1 + epsilon)} times the distance of the true neighbor of the same
+ * rank.</li>
+ * <li>{@code maxNodes}: The search stops after computing the distance to this
+ * many nodes (if {@code > 0}).</li>
+ * </ul>
+ * With {@code epsilon = 0} and {@code maxNodes = 0}, the search is exact.
+ * Use {@link #evaluate} to measure recall and number of visited nodes of a
+ * parameter setting.
+ * </p>
+ */
+public class ApproximateKNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final KDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final double epsilon;
+
+	protected final int maxNodes;
+
+	protected final KDTreeNode< T >[] bestPoints;
+
+	protected final double[] bestSquDistances;
+
+	/**
+	 * number of nodes visited in the last search.
+	 */
+	protected int numVisitedNodes;
+
+	/**
+	 * priority queue of subtrees to search, ordered by squared distance lower
+	 * bound.
+	 */
+	private KDTreeNode< T >[] queueNodes;
+
+	private double[] queueSquDistances;
+
+	private int queueSize;
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            number of neighbors to find
+	 * @param epsilon
+	 *            approximation factor ({@code >= 0})
+	 * @param maxNodes
+	 *            maximum number of nodes to visit per search, or {@code 0} for
+	 *            no limit
+	 */
+	@SuppressWarnings( "unchecked" )
+	public ApproximateKNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k, final double epsilon, final int maxNodes )
+	{
+		if ( epsilon < 0 )
+			throw new IllegalArgumentException( "epsilon must not be negative: " + epsilon );
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.epsilon = epsilon;
+		this.maxNodes = maxNodes;
+		this.bestPoints = new KDTreeNode[ k ];
+		this.bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		this.queueNodes = new KDTreeNode[ 64 ];
+		this.queueSquDistances = new double[ 64 ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	public int getMaxNodes()
+	{
+		return maxNodes;
+	}
+
+	/**
+	 * Get the number of nodes whose distance was computed in the last search.
+	 */
+	public int getNumVisitedNodes()
+	{
+		return numVisitedNodes;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestPoints[ i ] = null;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		numVisitedNodes = 0;
+
+		final double scale = ( 1 + epsilon ) * ( 1 + epsilon );
+		final int budget = maxNodes > 0 ? maxNodes : Integer.MAX_VALUE;
+		queueSize = 0;
+		push( tree.getRoot(), 0 );
+		while ( queueSize > 0 && numVisitedNodes < budget )
+		{
+			if ( queueSquDistances[ 0 ] * scale > bestSquDistances[ k - 1 ] )
+				break;
+			final double bound = queueSquDistances[ 0 ];
+			KDTreeNode< T > current = pop();
+
+			// descend to a leaf, queueing the away branches
+			while ( current != null && numVisitedNodes < budget )
+			{
+				consider( current );
+
+				final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+				final double axisSquDistance = axisDiff * axisDiff;
+				final boolean leftIsNearBranch = axisDiff < 0;
+				final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+				final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+
+				if ( awayChild != null )
+				{
+					final double awayBound = Math.max( bound, axisSquDistance );
+					if ( awayBound * scale <= bestSquDistances[ k - 1 ] )
+						push( awayChild, awayBound );
+				}
+				current = nearChild;
+			}
+		}
+
+		// release references held by the queue
+		Arrays.fill( queueNodes, 0, queueSize, null );
+		queueSize = 0;
+	}
+
+	private void consider( final KDTreeNode< T > current )
+	{
+		++numVisitedNodes;
+		final double squDistance = current.squDistanceTo( pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			int i = k - 1;
+			for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+			{
+				bestSquDistances[ i ] = bestSquDistances[ j ];
+				bestPoints[ i ] = bestPoints[ j ];
+			}
+			bestSquDistances[ i ] = squDistance;
+			bestPoints[ i ] = current;
+		}
+	}
+
+	private void push( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( queueSize == queueNodes.length )
+		{
+			queueNodes = Arrays.copyOf( queueNodes, 2 * queueSize );
+			queueSquDistances = Arrays.copyOf( queueSquDistances, 2 * queueSize );
+		}
+		int i = queueSize++;
+		while ( i > 0 )
+		{
+			final int parent = ( i - 1 ) / 2;
+			if ( queueSquDistances[ parent ] <= squDistance )
+				break;
+			queueNodes[ i ] = queueNodes[ parent ];
+			queueSquDistances[ i ] = queueSquDistances[ parent ];
+			i = parent;
+		}
+		queueNodes[ i ] = node;
+		queueSquDistances[ i ] = squDistance;
+	}
+
+	private KDTreeNode< T > pop()
+	{
+		final KDTreeNode< T > min = queueNodes[ 0 ];
+		final int last = --queueSize;
+		final KDTreeNode< T > node = queueNodes[ last ];
+		final double squDistance = queueSquDistances[ last ];
+		queueNodes[ last ] = null;
+		if ( last > 0 )
+		{
+			int i = 0;
+			while ( true )
+			{
+				int child = 2 * i + 1;
+				if ( child >= last )
+					break;
+				if ( child + 1 < last && queueSquDistances[ child + 1 ] < queueSquDistances[ child ] )
+					++child;
+				if ( squDistance <= queueSquDistances[ child ] )
+					break;
+				queueNodes[ i ] = queueNodes[ child ];
+				queueSquDistances[ i ] = queueSquDistances[ child ];
+				i = child;
+			}
+			queueNodes[ i ] = node;
+			queueSquDistances[ i ] = squDistance;
+		}
+		return min;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public ApproximateKNearestNeighborSearchOnKDTree< T > copy()
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< T > copy = new ApproximateKNearestNeighborSearchOnKDTree< T >( tree, k, epsilon, maxNodes );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		System.arraycopy( bestPoints, 0, copy.bestPoints, 0, k );
+		System.arraycopy( bestSquDistances, 0, copy.bestSquDistances, 0, k );
+		copy.numVisitedNodes = numVisitedNodes;
+		return copy;
+	}
+
+	/**
+	 * Recall and cost of approximate search with given parameters, compared
+	 * to exact search.
+	 */
+	public static class Evaluation
+	{
+		private final double recall;
+
+		private final double meanVisitedNodes;
+
+		private final double meanExactVisitedNodes;
+
+		public Evaluation( final double recall, final double meanVisitedNodes, final double meanExactVisitedNodes )
+		{
+			this.recall = recall;
+			this.meanVisitedNodes = meanVisitedNodes;
+			this.meanExactVisitedNodes = meanExactVisitedNodes;
+		}
+
+		/**
+		 * Get the fraction of the true k nearest neighbors that were found.
+		 */
+		public double getRecall()
+		{
+			return recall;
+		}
+
+		/**
+		 * Get the mean number of nodes visited per approximate search.
+		 */
+		public double getMeanVisitedNodes()
+		{
+			return meanVisitedNodes;
+		}
+
+		/**
+		 * Get the mean number of nodes visited per exact search.
+		 */
+		public double getMeanExactVisitedNodes()
+		{
+			return meanExactVisitedNodes;
+		}
+
+		/**
+		 * Get the ratio of nodes visited by exact and approximate search, an
+		 * estimate of the speedup of approximate search.
+		 */
+		public double getSpeedup()
+		{
+			return meanExactVisitedNodes / meanVisitedNodes;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format( "recall = %.4f, visited nodes = %.1f (exact: %.1f), speedup = %.2f", recall, meanVisitedNodes, meanExactVisitedNodes, getSpeedup() );
+		}
+	}
+
+	/**
+	 * Compare approximate search with the given parameters to exact search
+	 * for a sample of reference points.
+	 *
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            number of neighbors to find
+	 * @param epsilon
+	 *            approximation factor ({@code >= 0})
+	 * @param maxNodes
+	 *            maximum number of nodes to visit per search, or {@code 0} for
+	 *            no limit
+	 * @param references
+	 *            sample of reference points
+	 */
+	public static < T > Evaluation evaluate( final KDTree< T > tree, final int k, final double epsilon, final int maxNodes, final Iterable< ? extends RealLocalizable > references )
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< T > approximate = new ApproximateKNearestNeighborSearchOnKDTree< T >( tree, k, epsilon, maxNodes );
+		final ApproximateKNearestNeighborSearchOnKDTree< T > exact = new ApproximateKNearestNeighborSearchOnKDTree< T >( tree, k, 0, 0 );
+		long numFound = 0;
+		long numExpected = 0;
+		long visited = 0;
+		long exactVisited = 0;
+		long numReferences = 0;
+		for ( final RealLocalizable reference : references )
+		{
+			approximate.search( reference );
+			exact.search( reference );
+			for ( int i = 0; i < k && exact.bestPoints[ i ] != null; ++i )
+			{
+				++numExpected;
+				for ( int j = 0; j < k; ++j )
+					if ( approximate.bestPoints[ j ] == exact.bestPoints[ i ] )
+					{
+						++numFound;
+						break;
+					}
+			}
+			visited += approximate.numVisitedNodes;
+			exactVisited += exact.numVisitedNodes;
+			++numReferences;
+		}
+		if ( numReferences == 0 )
+			throw new IllegalArgumentException( "No reference points" );
+		return new Evaluation(
+				numExpected == 0 ? 1 : ( double ) numFound / numExpected,
+				( double ) visited / numReferences,
+				( double ) exactVisited / numReferences );
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+
+/**
+ * k-nearest-neighbor search for many reference points at once on a
+ * {@link FlatKDTree}. Reference points are given as flat coordinate arrays,
+ * results are written to primitive arrays, so no objects are created per
+ * reference point.
+ * <p>
+ * Searches can run in parallel on a {@link ForkJoinPool}. Optionally, the
+ * reference points are first ordered spatially, such that consecutive
+ * searches visit mostly the same nodes of the tree.
+ * </p>
+ */
+public class BatchKNearestNeighborSearchOnFlatKDTree< T >
+{
+	/**
+	 * Reference points are processed in chunks of this many, each by a single
+	 * thread.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final int k;
+
+	protected final boolean sortReferences;
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            number of neighbors to find for each reference point
+	 * @param sortReferences
+	 *            whether to process reference points in spatial order rather
+	 *            than the given order. (This does not affect the order of
+	 *            results.)
+	 */
+	public BatchKNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k, final boolean sortReferences )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.k = k;
+		this.sortReferences = sortReferences;
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	public int getK()
+	{
+		return k;
+	}
+
+	/**
+	 * Find the k nearest neighbors of each reference point.
+	 *
+	 * @param references
+	 *            coordinates of the reference points. Reference point
+	 *            {@code r} is at {@code [r * n, (r + 1) * n)}.
+	 * @param indices
+	 *            receives the index of the i-th nearest neighbor of reference
+	 *            point {@code r} at {@code [r * k + i]}, as returned by
+	 *            {@link FlatKDTree#getIndex(int)}, or -1 if the tree has fewer
+	 *            than {@code i + 1} nodes.
+	 * @param squDistances
+	 *            receives the squared distance of the i-th nearest neighbor of
+	 *            reference point {@code r} at {@code [r * k + i]}.
+	 * @param pool
+	 *            the pool to search on, or {@code null} to search sequentially
+	 *            in the calling thread.
+	 */
+	public void search( final double[] references, final int[] indices, final double[] squDistances, final ForkJoinPool pool )
+	{
+		if ( references.length % n != 0 )
+			throw new IllegalArgumentException( "Number of coordinates " + references.length + " is not a multiple of " + n );
+		final int numReferences = references.length / n;
+		if ( indices.length < ( long ) numReferences * k || squDistances.length < ( long ) numReferences * k )
+			throw new IllegalArgumentException( "Result arrays must have at least " + ( ( long ) numReferences * k ) + " elements" );
+
+		final int[] order = sortReferences ? spatialOrder( references ) : null;
+		final SearchAction action = new SearchAction( references, order, indices, squDistances, 0, numReferences );
+		if ( pool != null )
+			pool.invoke( action );
+		else
+			action.search();
+	}
+
+	/**
+	 * Find the k nearest neighbors of each reference point.
+	 *
+	 * @param references
+	 *            the reference points, in iteration order.
+	 * @param indices
+	 *            receives the index of the i-th nearest neighbor of reference
+	 *            point {@code r} at {@code [r * k + i]}, as returned by
+	 *            {@link FlatKDTree#getIndex(int)}, or -1 if the tree has fewer
+	 *            than {@code i + 1} nodes.
+	 * @param squDistances
+	 *            receives the squared distance of the i-th nearest neighbor of
+	 *            reference point {@code r} at {@code [r * k + i]}.
+	 * @param pool
+	 *            the pool to search on, or {@code null} to search sequentially
+	 *            in the calling thread.
+	 */
+	public void search( final IterableRealInterval< ? > references, final int[] indices, final double[] squDistances, final ForkJoinPool pool )
+	{
+		if ( references.size() * n > Integer.MAX_VALUE - 8 )
+			throw new IllegalArgumentException( "Too many reference points: " + references.size() );
+		final double[] coordinates = new double[ ( int ) references.size() * n ];
+		final double[] position = new double[ n ];
+		final RealCursor< ? > cursor = references.localizingCursor();
+		for ( int o = 0; cursor.hasNext(); o += n )
+		{
+			cursor.fwd();
+			cursor.localize( position );
+			System.arraycopy( position, 0, coordinates, o, n );
+		}
+		search( coordinates, indices, squDistances, pool );
+	}
+
+	/**
+	 * Order reference points by the in-order traversal of a kd-tree built on
+	 * them, which keeps nearby points close together.
+	 */
+	private int[] spatialOrder( final double[] references )
+	{
+		final int numReferences = references.length / n;
+		final FlatKDTree< Object > referenceTree = new FlatKDTree< Object >( n, references, Collections.nCopies( numReferences, null ) );
+		final int[] order = new int[ numReferences ];
+		for ( int i = 0; i < numReferences; ++i )
+			order[ i ] = referenceTree.getIndex( i );
+		return order;
+	}
+
+	/**
+	 * Searches reference points {@code order[from]} to {@code order[to - 1]},
+	 * splitting into chunks of at most {@link #CHUNK_SIZE} reference points.
+	 */
+	private final class SearchAction extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] references;
+
+		private final int[] order;
+
+		private final int[] indices;
+
+		private final double[] squDistances;
+
+		private final int from;
+
+		private final int to;
+
+		SearchAction( final double[] references, final int[] order, final int[] indices, final double[] squDistances, final int from, final int to )
+		{
+			this.references = references;
+			this.order = order;
+			this.indices = indices;
+			this.squDistances = squDistances;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= CHUNK_SIZE )
+				search();
+			else
+			{
+				final int mid = ( from + to ) >>> 1;
+				invokeAll(
+						new SearchAction( references, order, indices, squDistances, from, mid ),
+						new SearchAction( references, order, indices, squDistances, mid, to ) );
+			}
+		}
+
+		void search()
+		{
+			final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+			for ( int i = from; i < to; ++i )
+			{
+				final int r = order == null ? i : order[ i ];
+				search.search( references, r * n );
+				for ( int j = 0, o = r * k; j < k; ++j, ++o )
+				{
+					final int node = search.getNode( j );
+					indices[ o ] = node < 0 ? -1 : tree.getIndex( node );
+					squDistances[ o ] = search.getSquareDistance( j );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link FlatKDTree}.
+ * <p>
+ * The {@link Sampler Samplers} and {@link RealLocalizable RealLocalizables}
+ * returned by {@link #getSampler(int)} and {@link #getPosition(int)} are
+ * reused, and refer to the result of the latest
+ * {@link #search(RealLocalizable)}.
+ * </p>
+ */
+public class KNearestNeighborSearchOnFlatKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected final int k;
+
+	protected final int[] bestNodes;
+
+	protected final double[] bestSquDistances;
+
+	protected final FlatKDTree< T >.Node[] bestPoints;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = tree.getPositions();
+		this.k = k;
+		this.bestNodes = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestPoints = new FlatKDTree.Node[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = tree.new Node( -1 );
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		search();
+	}
+
+	/**
+	 * Perform k-nearest-neighbor search for the reference point at the first
+	 * {@link #numDimensions()} coordinates of the given array, starting at
+	 * {@code offset}.
+	 */
+	public void search( final double[] reference, final int offset )
+	{
+		System.arraycopy( reference, offset, pos, 0, n );
+		search();
+	}
+
+	protected void search()
+	{
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		if ( tree.size() > 0 )
+			searchNode( 0, ( int ) tree.size() - 1, 0 );
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setNode( bestNodes[ i ] );
+	}
+
+	/**
+	 * Search the subtree of nodes i to j (inclusive), which is split along
+	 * dimension d.
+	 */
+	protected void searchNode( final int i, final int j, final int d )
+	{
+		final int current = i + ( j - i ) / 2;
+
+		// consider the current node
+		final double squDistance = tree.squDistance( current, pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			int l = k - 1;
+			for ( int m = l - 1; l > 0 && squDistance < bestSquDistances[ m ]; --l, --m )
+			{
+				bestSquDistances[ l ] = bestSquDistances[ m ];
+				bestNodes[ l ] = bestNodes[ m ];
+			}
+			bestSquDistances[ l ] = squDistance;
+			bestNodes[ l ] = current;
+		}
+
+		final double axisDiff = pos[ d ] - positions[ current * n + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+
+		// search the near branch
+		if ( leftIsNearBranch )
+		{
+			if ( current > i )
+				searchNode( i, current - 1, dChild );
+		}
+		else if ( current < j )
+			searchNode( current + 1, j, dChild );
+
+		// search the away branch - maybe
+		if ( axisSquDistance <= bestSquDistances[ k - 1 ] )
+		{
+			if ( leftIsNearBranch )
+			{
+				if ( current < j )
+					searchNode( current + 1, j, dChild );
+			}
+			else if ( current > i )
+				searchNode( i, current - 1, dChild );
+		}
+	}
+
+	/**
+	 * Get the node of the i-th nearest neighbor, or -1 if the tree has fewer
+	 * than i + 1 nodes.
+	 */
+	public int getNode( final int i )
+	{
+		return bestNodes[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< T > copy = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestNodes[ i ] = bestNodes[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setNode( bestNodes[ i ] );
+		}
+		return copy;
+	}
+}
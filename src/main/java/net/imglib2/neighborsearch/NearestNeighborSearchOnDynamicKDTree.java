@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.DynamicKDTree.Entry;
+import net.imglib2.DynamicKDTree.Node;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link DynamicKDTree}. If the tree is empty, {@link #getSampler()} and
+ * {@link #getPosition()} return {@code null}.
+ */
+public class NearestNeighborSearchOnDynamicKDTree< T > implements NearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected Entry< T > bestPoint;
+
+	protected double bestSquDistance;
+
+	public NearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		bestPoint = null;
+		bestSquDistance = Double.MAX_VALUE;
+		if ( tree.getRoot() != null )
+			searchNode( tree.getRoot() );
+	}
+
+	protected void searchNode( final Node< T > current )
+	{
+		// consider the current node
+		if ( !current.isRemoved() )
+		{
+			final double distance = current.getEntry().squDistanceTo( pos );
+			if ( distance < bestSquDistance )
+			{
+				bestSquDistance = distance;
+				bestPoint = current.getEntry();
+			}
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final Node< T > nearChild = leftIsNearBranch ? current.getLeft() : current.getRight();
+		final Node< T > awayChild = leftIsNearBranch ? current.getRight() : current.getLeft();
+		if ( nearChild != null )
+			searchNode( nearChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistance ) && ( awayChild != null ) )
+			searchNode( awayChild );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final NearestNeighborSearchOnDynamicKDTree< T > copy = new NearestNeighborSearchOnDynamicKDTree< T >( tree );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestPoint = bestPoint;
+		copy.bestSquDistance = bestSquDistance;
+		return copy;
+	}
+}
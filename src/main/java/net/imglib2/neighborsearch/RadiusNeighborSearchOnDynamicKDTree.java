@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.DynamicKDTree.Entry;
+import net.imglib2.DynamicKDTree.Node;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link DynamicKDTree}. Results are collected in arrays that are reused
+ * between searches.
+ */
+public class RadiusNeighborSearchOnDynamicKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected Entry< T >[] resultEntries;
+
+	protected double[] resultSquDistances;
+
+	/**
+	 * buffers for sorting results.
+	 */
+	private int[] permutation;
+
+	private Entry< T >[] sortedEntries;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.resultEntries = new Entry[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.permutation = new int[ 0 ];
+		this.sortedEntries = new Entry[ 0 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		if ( tree.getRoot() != null )
+			searchNode( tree.getRoot(), radius * radius );
+		if ( sortResults && numNeighbors > 1 )
+			sortResults();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	protected void searchNode( final Node< T > current, final double squRadius )
+	{
+		// consider the current node
+		if ( !current.isRemoved() )
+		{
+			final double squDistance = current.getEntry().squDistanceTo( pos );
+			if ( squDistance <= squRadius )
+				add( current.getEntry(), squDistance );
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final Node< T > nearChild = leftIsNearBranch ? current.getLeft() : current.getRight();
+		final Node< T > awayChild = leftIsNearBranch ? current.getRight() : current.getLeft();
+		if ( nearChild != null )
+			searchNode( nearChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
+			searchNode( awayChild, squRadius );
+	}
+
+	private void add( final Entry< T > entry, final double squDistance )
+	{
+		if ( numNeighbors == resultEntries.length )
+		{
+			resultEntries = Arrays.copyOf( resultEntries, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultEntries[ numNeighbors ] = entry;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	/**
+	 * Sort results by distance, sorting the distances together with a
+	 * permutation and applying the permutation to the entries.
+	 */
+	private void sortResults()
+	{
+		if ( permutation.length < resultEntries.length )
+		{
+			permutation = new int[ resultEntries.length ];
+			sortedEntries = Arrays.copyOf( sortedEntries, resultEntries.length );
+		}
+		for ( int i = 0; i < numNeighbors; ++i )
+			permutation[ i ] = i;
+		Util.quicksort( resultSquDistances, permutation, 0, numNeighbors - 1 );
+		for ( int i = 0; i < numNeighbors; ++i )
+			sortedEntries[ i ] = resultEntries[ permutation[ i ] ];
+
+		final Entry< T >[] tmp = resultEntries;
+		resultEntries = sortedEntries;
+		sortedEntries = tmp;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * Get the entry of the i-th neighbor.
+	 */
+	public Entry< T > getEntry( final int i )
+	{
+		return resultEntries[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return resultEntries[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return resultEntries[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link FlatKDTree}. Results are collected in primitive arrays that are
+ * reused between searches.
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected int numNeighbors;
+
+	protected int[] resultNodes;
+
+	protected double[] resultSquDistances;
+
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = tree.getPositions();
+		this.resultNodes = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		if ( tree.size() > 0 )
+			searchNode( 0, ( int ) tree.size() - 1, 0, radius * radius );
+		if ( sortResults && numNeighbors > 1 )
+			Util.quicksort( resultSquDistances, resultNodes, 0, numNeighbors - 1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Search the subtree of nodes i to j (inclusive), which is split along
+	 * dimension d.
+	 */
+	protected void searchNode( final int i, final int j, final int d, final double squRadius )
+	{
+		final int current = i + ( j - i ) / 2;
+
+		// consider the current node
+		final double squDistance = tree.squDistance( current, pos );
+		if ( squDistance <= squRadius )
+		{
+			if ( numNeighbors == resultNodes.length )
+			{
+				resultNodes = Arrays.copyOf( resultNodes, 2 * numNeighbors );
+				resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+			}
+			resultNodes[ numNeighbors ] = current;
+			resultSquDistances[ numNeighbors ] = squDistance;
+			++numNeighbors;
+		}
+
+		final double axisDiff = pos[ d ] - positions[ current * n + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+
+		// search the near branch
+		if ( leftIsNearBranch )
+		{
+			if ( current > i )
+				searchNode( i, current - 1, dChild, squRadius );
+		}
+		else if ( current < j )
+			searchNode( current + 1, j, dChild, squRadius );
+
+		// search the away branch - maybe
+		if ( axisSquDistance <= squRadius )
+		{
+			if ( leftIsNearBranch )
+			{
+				if ( current < j )
+					searchNode( current + 1, j, dChild, squRadius );
+			}
+			else if ( current > i )
+				searchNode( i, current - 1, dChild, squRadius );
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * Get the node of the i-th neighbor.
+	 */
+	public int getNode( final int i )
+	{
+		return resultNodes[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return tree.new Node( resultNodes[ i ] );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return tree.new Node( resultNodes[ i ] );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
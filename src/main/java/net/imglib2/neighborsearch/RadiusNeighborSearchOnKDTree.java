@@ -35,36 +35,94 @@
 package net.imglib2.neighborsearch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 
 import net.imglib2.KDTree;
 import net.imglib2.KDTreeNode;
 import net.imglib2.RealLocalizable;
 import net.imglib2.Sampler;
+import net.imglib2.util.Util;
 import net.imglib2.util.ValuePair;
 
 /**
  * Implementation of {@link RadiusNeighborSearch} search for kd-trees.
+ * <p>
+ * Results are collected in arrays that are reused between searches. For
+ * callers that do not need the list of neighbors, {@link #count} and
+ * {@link #visit} search without collecting results.
+ * </p>
  * 
  * @author Tobias Pietzsch
  */
 public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch< T >
 {
+	/**
+	 * Receives the neighbors found by {@link RadiusNeighborSearchOnKDTree#visit}.
+	 */
+	public interface Visitor< T >
+	{
+		/**
+		 * Called for each neighbor, in no particular order.
+		 *
+		 * @param node
+		 *            the neighbor
+		 * @param squDistance
+		 *            squared distance of the neighbor to the reference point
+		 */
+		void visit( KDTreeNode< T > node, double squDistance );
+	}
+
 	protected KDTree< T > tree;
 
 	protected final int n;
 
 	protected final double[] pos;
 
+	/**
+	 * Results of the last {@link #search(RealLocalizable, double, boolean)},
+	 * filled by {@link #searchNode(KDTreeNode, double)} for subclasses only.
+	 * This class itself collects results in reused arrays.
+	 */
+	@Deprecated
 	protected ArrayList< ValuePair< KDTreeNode< T >, Double > > resultPoints;
 
+	/**
+	 * Whether this is a subclass, which may override
+	 * {@link #searchNode(KDTreeNode, double)} or read {@link #resultPoints}.
+	 */
+	private final boolean isSubclass = getClass() != RadiusNeighborSearchOnKDTree.class;
+
+	private int numNeighbors;
+
+	private KDTreeNode< T >[] resultNodes;
+
+	private double[] resultSquDistances;
+
+	/**
+	 * buffers for sorting results.
+	 */
+	private int[] permutation;
+
+	private KDTreeNode< T >[] sortedNodes;
+
+	private final Visitor< T > collector = ( node, squDistance ) -> add( node, squDistance );
+
+	private int count;
+
+	private final Visitor< T > counter = ( node, squDistance ) -> ++count;
+
+	@SuppressWarnings( "unchecked" )
 	public RadiusNeighborSearchOnKDTree( final KDTree< T > tree )
 	{
 		this.tree = tree;
 		this.n = tree.numDimensions();
 		this.pos = new double[ n ];
 		this.resultPoints = new ArrayList< ValuePair< KDTreeNode< T >, Double > >();
+		this.resultNodes = new KDTreeNode[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.permutation = new int[ 0 ];
+		this.sortedNodes = new KDTreeNode[ 0 ];
 	}
 
 	@Override
@@ -72,19 +130,69 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 	{
 		assert radius >= 0;
 		reference.localize( pos );
+		numNeighbors = 0;
+		if ( isSubclass )
+		{
+			searchSubclass( radius, sortResults );
+			return;
+		}
+		searchNode( tree.getRoot(), radius * radius, collector );
+		if ( sortResults && numNeighbors > 1 )
+			sortResults();
+	}
+
+	/**
+	 * Search through {@link #searchNode(KDTreeNode, double)} into
+	 * {@link #resultPoints}, as before the reused arrays were introduced, and
+	 * copy the results to the arrays.
+	 */
+	private void searchSubclass( final double radius, final boolean sortResults )
+	{
 		resultPoints.clear();
 		searchNode( tree.getRoot(), radius * radius );
 		if ( sortResults )
-		{
-			Collections.sort( resultPoints, new Comparator< ValuePair< KDTreeNode< T >, Double > >()
-			{
-				@Override
-				public int compare( final ValuePair< KDTreeNode< T >, Double > o1, final ValuePair< KDTreeNode< T >, Double > o2 )
-				{
-					return Double.compare( o1.b, o2.b );
-				}
-			} );
-		}
+			Collections.sort( resultPoints, ( o1, o2 ) -> Double.compare( o1.b, o2.b ) );
+		for ( final ValuePair< KDTreeNode< T >, Double > p : resultPoints )
+			add( p.a, p.b );
+	}
+
+	/**
+	 * Count the points within the given radius, without collecting them. This
+	 * does not change the results of the last
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 *
+	 * @param reference
+	 *            the reference point
+	 * @param radius
+	 *            the radius
+	 * @return the number of points within the given radius
+	 */
+	public int count( final RealLocalizable reference, final double radius )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		count = 0;
+		searchNode( tree.getRoot(), radius * radius, counter );
+		return count;
+	}
+
+	/**
+	 * Pass each point within the given radius to a {@link Visitor}, without
+	 * collecting them. This does not change the results of the last
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 *
+	 * @param reference
+	 *            the reference point
+	 * @param radius
+	 *            the radius
+	 * @param visitor
+	 *            receives the points within the given radius
+	 */
+	public void visit( final RealLocalizable reference, final double radius, final Visitor< T > visitor )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		searchNode( tree.getRoot(), radius * radius, visitor );
 	}
 
 	@Override
@@ -93,13 +201,24 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		return n;
 	}
 
+	/**
+	 * Add the nodes within {@code squRadius} in the subtree of {@code current}
+	 * to {@link #resultPoints}. Called by
+	 * {@link #search(RealLocalizable, double, boolean)} in subclasses only.
+	 */
+	@Deprecated
 	protected void searchNode( final KDTreeNode< T > current, final double squRadius )
+	{
+		searchNode( current, squRadius, ( node, squDistance ) -> resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( node, squDistance ) ) );
+	}
+
+	private void searchNode( final KDTreeNode< T > current, final double squRadius, final Visitor< T > visitor )
 	{
 		// consider the current node
 		final double squDistance = current.squDistanceTo( pos );
 		if ( squDistance <= squRadius )
 		{
-			resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( current, squDistance ) );
+			visitor.visit( current, squDistance );
 		}
 
 		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
@@ -110,40 +229,74 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
 		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
 		if ( nearChild != null )
-			searchNode( nearChild, squRadius );
+			searchNode( nearChild, squRadius, visitor );
 
 		// search the away branch - maybe
 		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
-			searchNode( awayChild, squRadius );
+			searchNode( awayChild, squRadius, visitor );
+	}
+
+	private void add( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			resultNodes = Arrays.copyOf( resultNodes, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	/**
+	 * Sort results by distance, sorting the distances together with a
+	 * permutation and applying the permutation to the nodes.
+	 */
+	private void sortResults()
+	{
+		if ( permutation.length < resultNodes.length )
+		{
+			permutation = new int[ resultNodes.length ];
+			sortedNodes = Arrays.copyOf( sortedNodes, resultNodes.length );
+		}
+		for ( int i = 0; i < numNeighbors; ++i )
+			permutation[ i ] = i;
+		Util.quicksort( resultSquDistances, permutation, 0, numNeighbors - 1 );
+		for ( int i = 0; i < numNeighbors; ++i )
+			sortedNodes[ i ] = resultNodes[ permutation[ i ] ];
+
+		final KDTreeNode< T >[] tmp = resultNodes;
+		resultNodes = sortedNodes;
+		sortedNodes = tmp;
 	}
 
 	@Override
 	public int numNeighbors()
 	{
-		return resultPoints.size();
+		return numNeighbors;
 	}
 
 	@Override
 	public Sampler< T > getSampler( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public RealLocalizable getPosition( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public double getSquareDistance( final int i )
 	{
-		return resultPoints.get( i ).b;
+		return resultSquDistances[ i ];
 	}
 
 	@Override
 	public double getDistance( final int i )
 	{
-		return Math.sqrt( resultPoints.get( i ).b );
+		return Math.sqrt( resultSquDistances[ i ] );
 	}
 }
@@ -59,6 +59,9 @@ public abstract class AbstractBitType< T extends AbstractBitType< T > > implemen
 	// the DataAccess that holds the information
 	protected LongAccess dataAccess;
 
+	// whether writes must be safe against other threads writing the same long
+	protected boolean concurrentWrites = true;
+
 	// this is the constructor if you want it to read from an array
 	public AbstractBitType(
 			final NativeImg< ?, ? extends LongAccess> bitStorage,
@@ -106,4 +109,26 @@ public abstract class AbstractBitType< T extends AbstractBitType< T > > implemen
 
 	@Override
 	public Fraction getEntitiesPerPixel() { return new Fraction( nBits, 64 ); }
+
+	/**
+	 * Choose between lock-free concurrent writes (the default) and plain
+	 * single-writer writes of this instance. Single-writer mode is only safe if
+	 * no other thread writes pixels that share a {@code long} with the pixels
+	 * written through this instance.
+	 *
+	 * @see LongAccessBits
+	 */
+	public void setConcurrentWrites( final boolean concurrentWrites )
+	{
+		this.concurrentWrites = concurrentWrites;
+	}
+
+	/**
+	 * Set the {@code long} at {@code index} to
+	 * {@code (value & retainMask) | bits}.
+	 */
+	protected void updateBits( final int index, final long retainMask, final long bits )
+	{
+		LongAccessBits.update( dataAccess, index, retainMask, bits, concurrentWrites );
+	}
 }
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.type;
+
+import net.imglib2.img.basictypeaccess.AtomicLongAccess;
+import net.imglib2.img.basictypeaccess.LongAccess;
+
+/**
+ * Read-modify-write of bits in a {@link LongAccess}, as done by bit-packed
+ * types, where several pixels share one {@code long}.
+ * <p>
+ * Concurrent writes to different pixels in the same {@code long} must not
+ * lose each other's bits. If the access is an {@link AtomicLongAccess} (e.g.,
+ * any {@link net.imglib2.img.basictypeaccess.array.LongArray}), bits are
+ * updated by a compare-and-set loop, so writers never block. Other accesses
+ * are locked for the update.
+ * </p>
+ * <p>
+ * Callers that partition the work themselves, such that no two threads write
+ * pixels in the same {@code long}, can skip all of this and use plain
+ * single-writer updates.
+ * </p>
+ */
+public final class LongAccessBits
+{
+	private LongAccessBits()
+	{}
+
+	/**
+	 * Set the value at {@code index} to
+	 * {@code (value & retainMask) | bits}.
+	 *
+	 * @param concurrent
+	 *            whether other threads may update the same value concurrently.
+	 *            If {@code false}, the update is a plain read and write.
+	 */
+	public static void update( final LongAccess access, final int index, final long retainMask, final long bits, final boolean concurrent )
+	{
+		if ( !concurrent )
+		{
+			access.setValue( index, ( access.getValue( index ) & retainMask ) | bits );
+		}
+		else if ( access instanceof AtomicLongAccess )
+		{
+			final AtomicLongAccess atomic = ( AtomicLongAccess ) access;
+			long v;
+			do
+			{
+				v = atomic.getValue( index );
+			}
+			while ( !atomic.compareAndSetValue( index, v, ( v & retainMask ) | bits ) );
+		}
+		else
+		{
+			synchronized ( access )
+			{
+				access.setValue( index, ( access.getValue( index ) & retainMask ) | bits );
+			}
+		}
+	}
+}
@@ -41,6 +41,7 @@ import net.imglib2.img.NativeImgFactory;
 import net.imglib2.img.basictypeaccess.LongAccess;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.LongAccessBits;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.integer.AbstractIntegerType;
@@ -62,6 +63,9 @@ public class BitType extends AbstractIntegerType< BitType > implements BooleanTy
 	// the DataAccess that holds the information
 	protected LongAccess dataAccess;
 
+	// whether writes must be safe against other threads writing the same long
+	protected boolean concurrentWrites = true;
+
 	// this is the constructor if you want it to read from an array
 	public BitType( final NativeImg< ?, ? extends LongAccess > bitStorage )
 	{
@@ -133,13 +137,21 @@ public class BitType extends AbstractIntegerType< BitType > implements BooleanTy
 		// Same as above, minus one multiplication, plus one shift to multiply the reminder by 2
 		final int i1 = (int)(i >>> 6); // Same as (i * 2) / 64 = (i << 1) >>> 6
 		final long bit = 1l << (i & 63);
-		synchronized ( dataAccess ) {
-			// Clear or set the bit
-			if ( value )
-				dataAccess.setValue( i1, dataAccess.getValue(i1) | bit );
-			else
-				dataAccess.setValue( i1, dataAccess.getValue(i1) & ~bit );
-		}
+		// Clear or set the bit
+		LongAccessBits.update( dataAccess, i1, ~bit, value ? bit : 0, concurrentWrites );
+	}
+
+	/**
+	 * Choose between lock-free concurrent writes (the default) and plain
+	 * single-writer writes of this instance. Single-writer mode is only safe if
+	 * no other thread writes pixels that share a {@code long} with the pixels
+	 * written through this instance.
+	 *
+	 * @see LongAccessBits
+	 */
+	public void setConcurrentWrites( final boolean concurrentWrites )
+	{
+		this.concurrentWrites = concurrentWrites;
 	}
 
 	@Override
@@ -125,28 +125,19 @@ public class Unsigned12BitType extends AbstractIntegerBitType< Unsigned12BitType
 
 		final long antiShift = 64 - shift;
 
-		synchronized ( dataAccess ) {
-			final long v = dataAccess.getValue(i1);
-			if (antiShift < 12) {
-				// Number split between two adjacent longs
-				// 1. Store the lower bits of safeValue at the upper bits of v1
-				final long v1 = (v & (0xffffffffffffffffL >>> antiShift)) // clear upper bits, keep other values
-						| ((safeValue & (mask >>> (12 - antiShift))) << shift); // the lower part of safeValue, stored at the upper end
-				dataAccess.setValue(i1, v1);
-				// 2. Store the upper bits of safeValue at the lower bits of v2
-				final long v2 = (dataAccess.getValue(i1 + 1) & (0xffffffffffffffffL << (12 - antiShift))) // other
-						| (safeValue >>> antiShift); // upper part of safeValue, stored at the lower end
-				dataAccess.setValue(i1 + 1, v2);
-			} else {
-				// Number contained inside a single long
-				if (0 == v) {
-					// Trivial case
-					dataAccess.setValue(i1, safeValue << shift);
-				} else {
-					// Clear the bits first
-					dataAccess.setValue(i1, (v & ~(mask << shift)) | (safeValue << shift));
-				}
-			}
+		if (antiShift < 12) {
+			// Number split between two adjacent longs
+			// 1. Store the lower bits of safeValue at the upper bits of v1
+			updateBits(i1,
+					0xffffffffffffffffL >>> antiShift, // clear upper bits, keep other values
+					(safeValue & (mask >>> (12 - antiShift))) << shift); // the lower part of safeValue, stored at the upper end
+			// 2. Store the upper bits of safeValue at the lower bits of v2
+			updateBits(i1 + 1,
+					0xffffffffffffffffL << (12 - antiShift), // other
+					safeValue >>> antiShift); // upper part of safeValue, stored at the lower end
+		} else {
+			// Number contained inside a single long
+			updateBits(i1, ~(mask << shift), safeValue << shift);
 		}
 	}
 
@@ -124,9 +124,7 @@ public class Unsigned2BitType extends AbstractIntegerBitType<Unsigned2BitType>
 
 		final long bitsToRetain = ~(mask << shift);
 		final long bitsToSet = (value & mask) << shift;
-		synchronized ( dataAccess ) {
-			dataAccess.setValue(i1, (dataAccess.getValue(i1) & bitsToRetain) | bitsToSet);
-		}
+		updateBits( i1, bitsToRetain, bitsToSet );
 	}
 
 	@Override
@@ -116,9 +116,7 @@ public class Unsigned4BitType extends AbstractIntegerBitType<Unsigned4BitType>
 
 		final long bitsToRetain = ~(mask << shift);
 		final long bitsToSet = (value & mask) << shift;
-		synchronized ( dataAccess ) {
-			dataAccess.setValue(i1, (dataAccess.getValue(i1) & bitsToRetain) | bitsToSet);
-		}
+		updateBits( i1, bitsToRetain, bitsToSet );
 	}
 
 	@Override
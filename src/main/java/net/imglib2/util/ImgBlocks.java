@@ -0,0 +1,250 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.lang.reflect.Array;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * The storage of an {@link ArrayImg}, {@link PlanarImg}, or
+ * {@link AbstractCellImg} as a regular grid of blocks, where each block is a
+ * primitive array holding its pixels in flat order. For an {@link ArrayImg},
+ * the grid has a single block. For a {@link PlanarImg}, each plane is a block.
+ * <p>
+ * Used by {@link ImgUtil} to move data between containers with
+ * {@link System#arraycopy(Object, int, Object, int, int)}.
+ * </p>
+ */
+final class ImgBlocks
+{
+	final CellGrid grid;
+
+	/**
+	 * storage arrays of all blocks in flat grid order
+	 */
+	final Object[] arrays;
+
+	/**
+	 * (integral) number of array elements per pixel
+	 */
+	final int entitiesPerPixel;
+
+	final Class< ? > typeClass;
+
+	private ImgBlocks( final CellGrid grid, final Object[] arrays, final int entitiesPerPixel, final Class< ? > typeClass )
+	{
+		this.grid = grid;
+		this.arrays = arrays;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.typeClass = typeClass;
+	}
+
+	/**
+	 * @return the blocks of {@code img}, or {@code null} if {@code img} is not
+	 *         a supported container, is not backed by primitive arrays, or has
+	 *         a fractional number of entities per pixel.
+	 */
+	static ImgBlocks of( final Img< ? > img )
+	{
+		if ( img.size() == 0 )
+			return null;
+		final Object type = img.firstElement();
+		if ( !( type instanceof NativeType ) )
+			return null;
+
+		final int n = img.numDimensions();
+		final long[] dimensions = Intervals.dimensionsAsLongArray( img );
+		final CellGrid grid;
+		final Object[] arrays;
+		if ( img instanceof ArrayImg )
+		{
+			grid = new CellGrid( dimensions, Util.long2int( dimensions ) );
+			arrays = new Object[] { ( ( ArrayImg< ?, ? > ) img ).update( null ) };
+		}
+		else if ( img instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) img;
+			final int[] planeDimensions = new int[ n ];
+			for ( int d = 0; d < n; ++d )
+				planeDimensions[ d ] = d < 2 ? ( int ) dimensions[ d ] : 1;
+			grid = new CellGrid( dimensions, planeDimensions );
+			arrays = new Object[ planar.numSlices() ];
+			for ( int i = 0; i < arrays.length; ++i )
+				arrays[ i ] = planar.getPlane( i );
+		}
+		else if ( img instanceof AbstractCellImg )
+		{
+			final AbstractCellImg< ?, ?, ?, ? > cellImg = ( AbstractCellImg< ?, ?, ?, ? > ) img;
+			grid = cellImg.getCellGrid();
+			final long numCells = Intervals.numElements( grid.getGridDimensions() );
+			if ( numCells > Integer.MAX_VALUE - 8 )
+				return null;
+			arrays = new Object[ ( int ) numCells ];
+			final Cursor< ? extends Cell< ? > > cells = cellImg.getCells().cursor();
+			for ( int i = 0; i < arrays.length; ++i )
+				arrays[ i ] = cells.next().getData();
+		}
+		else
+			return null;
+
+		// Entities per pixel are taken from the storage, because not all types
+		// report them correctly, e.g., BitType.
+		final int[] cellDims = new int[ n ];
+		final long[] cellMin = new long[ n ];
+		int entitiesPerPixel = 0;
+		for ( int i = 0; i < arrays.length; ++i )
+		{
+			if ( !( arrays[ i ] instanceof ArrayDataAccess ) )
+				return null;
+			arrays[ i ] = ( ( ArrayDataAccess< ? > ) arrays[ i ] ).getCurrentStorageArray();
+			grid.getCellDimensions( i, cellMin, cellDims );
+			final long numPixels = Intervals.numElements( cellDims );
+			final int length = Array.getLength( arrays[ i ] );
+			if ( i == 0 )
+				entitiesPerPixel = ( int ) ( length / numPixels );
+			if ( entitiesPerPixel == 0 || length != entitiesPerPixel * numPixels )
+				return null;
+		}
+
+		return new ImgBlocks( grid, arrays, entitiesPerPixel, type.getClass() );
+	}
+
+	/**
+	 * @return whether data can be copied between arrays of {@code this} and
+	 *         {@code other}.
+	 */
+	boolean isCompatible( final ImgBlocks other )
+	{
+		return typeClass == other.typeClass &&
+				entitiesPerPixel == other.entitiesPerPixel &&
+				arrays[ 0 ].getClass() == other.arrays[ 0 ].getClass();
+	}
+
+	int numBlocks()
+	{
+		return arrays.length;
+	}
+
+	/**
+	 * @return the number of pixels in block {@code block}.
+	 */
+	long blockSize( final int block )
+	{
+		final int n = grid.numDimensions();
+		final int[] dims = new int[ n ];
+		grid.getCellDimensions( block, new long[ n ], dims );
+		return Intervals.numElements( dims );
+	}
+
+	/**
+	 * Copy pixels with flat indices {@code [from, to)} of block
+	 * {@code targetBlock} of {@code this} from the same positions in
+	 * {@code source}.
+	 */
+	void copyFrom( final ImgBlocks source, final int targetBlock, final long from, final long to )
+	{
+		final int n = grid.numDimensions();
+		final long[] min = new long[ n ];
+		final int[] dims = new int[ n ];
+		grid.getCellDimensions( targetBlock, min, dims );
+		final Object targetArray = arrays[ targetBlock ];
+		final int epp = entitiesPerPixel;
+
+		final long[] sourceGridPosition = new long[ n ];
+		final long[] sourceMin = new long[ n ];
+		final int[] sourceDims = new int[ n ];
+		final long[] local = new long[ n ];
+		final long[] position = new long[ n ];
+
+		long i = from;
+		while ( i < to )
+		{
+			IntervalIndexer.indexToPosition( ( int ) i, dims, local );
+			for ( int d = 0; d < n; ++d )
+			{
+				position[ d ] = min[ d ] + local[ d ];
+				sourceGridPosition[ d ] = position[ d ] / source.grid.cellDimension( d );
+			}
+			source.grid.getCellDimensions( sourceGridPosition, sourceMin, sourceDims );
+			final Object sourceArray = source.arrays[ ( int ) IntervalIndexer.positionToIndex( sourceGridPosition, source.grid.getGridDimensions() ) ];
+
+			if ( i == from && equals( min, dims, sourceMin, sourceDims ) )
+			{
+				// identical block layout: copy the whole range at once
+				System.arraycopy( sourceArray, ( int ) from * epp, targetArray, ( int ) from * epp, ( int ) ( to - from ) * epp );
+				return;
+			}
+
+			// copy until the end of the row in the target or source block
+			for ( int d = 0; d < n; ++d )
+				position[ d ] -= sourceMin[ d ];
+			final int sourceIndex = IntervalIndexer.positionToIndex( position, sourceDims );
+			final long length = Math.min( to - i, Math.min( dims[ 0 ] - local[ 0 ], sourceDims[ 0 ] - position[ 0 ] ) );
+			System.arraycopy( sourceArray, sourceIndex * epp, targetArray, ( int ) i * epp, ( int ) length * epp );
+			i += length;
+		}
+	}
+
+	/**
+	 * Set pixels with flat indices {@code [from, to)} of block {@code block}
+	 * to the entities in {@code pattern}.
+	 */
+	void fill( final Object pattern, final int block, final long from, final long to )
+	{
+		final Object array = arrays[ block ];
+		final int start = ( int ) from * entitiesPerPixel;
+		final int length = ( int ) ( to - from ) * entitiesPerPixel;
+		System.arraycopy( pattern, 0, array, start, entitiesPerPixel );
+		for ( int filled = entitiesPerPixel; filled < length; filled *= 2 )
+			System.arraycopy( array, start, array, start + filled, Math.min( filled, length - filled ) );
+	}
+
+	private static boolean equals( final long[] min1, final int[] dims1, final long[] min2, final int[] dims2 )
+	{
+		for ( int d = 0; d < min1.length; ++d )
+			if ( min1[ d ] != min2[ d ] || dims1[ d ] != dims2[ d ] )
+				return false;
+		return true;
+	}
+}
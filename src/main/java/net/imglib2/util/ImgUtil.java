@@ -34,17 +34,42 @@
 
 package net.imglib2.util;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
 
 /**
  * This class contains static methods for copying image data to and from Img
  * instances. It was developed to support access to imglib from applications
  * that can't rely on JIT compilation and that access imglib via the JVM or
  * through JNI (specifically CellProfiler).
+ * <p>
+ * It also contains multi-threaded bulk operations to copy, fill, and convert
+ * whole images. Between {@link net.imglib2.img.array.ArrayImg ArrayImgs},
+ * {@link net.imglib2.img.planar.PlanarImg PlanarImgs}, and
+ * {@link net.imglib2.img.cell.CellImg CellImgs}, these move contiguous runs of
+ * pixels with {@link System#arraycopy(Object, int, Object, int, int)}.
+ * </p>
  * 
  * 
  * @author Tobias Pietzsch
@@ -288,4 +313,238 @@ public class ImgUtil
 			dest[ this_offset ] = t.get();
 		}
 	}
+
+	/**
+	 * Pixels per task of the bulk operations are at least this many.
+	 */
+	private static final long MIN_TASK_SIZE = 1 << 14;
+
+	/**
+	 * Copy {@code source} into {@code target}, using the common
+	 * {@link ForkJoinPool}.
+	 *
+	 * @see #copy(RandomAccessibleInterval, Img, ExecutorService)
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final Img< T > target )
+	{
+		copy( source, target, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Copy {@code source} into {@code target}. Pixel {@code p} of
+	 * {@code target} is set to pixel {@code source.min + p} of {@code source}.
+	 * <p>
+	 * If both are {@link ArrayImg}s, {@link net.imglib2.img.planar.PlanarImg}s,
+	 * or {@link net.imglib2.img.cell.AbstractCellImg}s of the same
+	 * {@link NativeType}, backed by primitive arrays, the data is moved with
+	 * {@link System#arraycopy(Object, int, Object, int, int)} in runs along
+	 * dimension 0, or in whole blocks where planes or cells of source and target
+	 * coincide. The work is split by planes or cells of the target. Otherwise
+	 * the copy falls back to cursors, split into ranges of the target's
+	 * iteration order.
+	 * </p>
+	 *
+	 * @param service
+	 *            executes the tasks of the copy.
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final Img< T > target, final ExecutorService service )
+	{
+		checkDimensions( source, target );
+		if ( source instanceof Img )
+		{
+			final ImgBlocks sourceBlocks = ImgBlocks.of( ( Img< T > ) source );
+			final ImgBlocks targetBlocks = sourceBlocks == null ? null : ImgBlocks.of( target );
+			if ( targetBlocks != null && targetBlocks.isCompatible( sourceBlocks ) )
+			{
+				final List< Callable< Void > > tasks = new ArrayList<>();
+				final long taskSize = taskSize( target.size() );
+				for ( int b = 0; b < targetBlocks.numBlocks(); ++b )
+				{
+					final int block = b;
+					final long blockSize = targetBlocks.blockSize( b );
+					for ( long from = 0; from < blockSize; from += taskSize )
+					{
+						final long start = from;
+						final long end = Math.min( from + taskSize, blockSize );
+						tasks.add( () -> {
+							targetBlocks.copyFrom( sourceBlocks, block, start, end );
+							return null;
+						} );
+					}
+				}
+				invokeAll( tasks, service );
+				return;
+			}
+		}
+		convert( source, target, ( a, b ) -> b.set( a ), service );
+	}
+
+	/**
+	 * Set all pixels of {@code target} to {@code value}, using the common
+	 * {@link ForkJoinPool}.
+	 *
+	 * @see #fill(Img, NativeType, ExecutorService)
+	 */
+	public static < T extends NativeType< T > > void fill( final Img< T > target, final T value )
+	{
+		fill( target, value, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Set all pixels of {@code target} to {@code value}. For an
+	 * {@link ArrayImg}, {@link net.imglib2.img.planar.PlanarImg}, or
+	 * {@link net.imglib2.img.cell.AbstractCellImg} backed by primitive arrays,
+	 * the arrays are filled by repeated doubling with
+	 * {@link System#arraycopy(Object, int, Object, int, int)}, split by planes
+	 * or cells.
+	 *
+	 * @param service
+	 *            executes the tasks of the fill.
+	 */
+	public static < T extends NativeType< T > > void fill( final Img< T > target, final T value, final ExecutorService service )
+	{
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		final long taskSize = taskSize( target.size() );
+		final ImgBlocks blocks = ImgBlocks.of( target );
+		if ( blocks != null )
+		{
+			final ArrayImg< T, ? > pixel = new ArrayImgFactory< T >().create( new long[] { 1 }, value );
+			pixel.firstElement().set( value );
+			final Object pattern = ( ( ArrayDataAccess< ? > ) pixel.update( null ) ).getCurrentStorageArray();
+			for ( int b = 0; b < blocks.numBlocks(); ++b )
+			{
+				final int block = b;
+				final long blockSize = blocks.blockSize( b );
+				for ( long from = 0; from < blockSize; from += taskSize )
+				{
+					final long start = from;
+					final long end = Math.min( from + taskSize, blockSize );
+					tasks.add( () -> {
+						blocks.fill( pattern, block, start, end );
+						return null;
+					} );
+				}
+			}
+		}
+		else
+		{
+			final long size = target.size();
+			for ( long from = 0; from < size; from += taskSize )
+			{
+				final long start = from;
+				final long length = Math.min( taskSize, size - from );
+				tasks.add( () -> {
+					final Cursor< T > c = target.cursor();
+					c.jumpFwd( start );
+					for ( long i = 0; i < length; ++i )
+						c.next().set( value );
+					return null;
+				} );
+			}
+		}
+		invokeAll( tasks, service );
+	}
+
+	/**
+	 * Convert {@code source} into {@code target}, using the common
+	 * {@link ForkJoinPool}.
+	 *
+	 * @see #convert(RandomAccessibleInterval, Img, Converter, ExecutorService)
+	 */
+	public static < A, B > void convert( final RandomAccessibleInterval< A > source, final Img< B > target, final Converter< ? super A, ? super B > converter )
+	{
+		convert( source, target, converter, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Convert {@code source} into {@code target}. Pixel {@code p} of
+	 * {@code target} is set from pixel {@code source.min + p} of
+	 * {@code source}. The work is split into ranges of the iteration order of
+	 * {@code target}. If {@code source} has the same iteration order, both are
+	 * iterated with cursors, otherwise {@code source} is accessed through a
+	 * {@link RandomAccess}.
+	 *
+	 * @param converter
+	 *            must be safe to use from several threads at once.
+	 * @param service
+	 *            executes the tasks of the conversion.
+	 */
+	public static < A, B > void convert( final RandomAccessibleInterval< A > source, final Img< B > target, final Converter< ? super A, ? super B > converter, final ExecutorService service )
+	{
+		checkDimensions( source, target );
+		final RandomAccessibleInterval< A > zeroMinSource = isZeroMin( source ) ? source : Views.zeroMin( source );
+		final boolean sameOrder = zeroMinSource instanceof IterableInterval &&
+				( ( IterableInterval< ? > ) zeroMinSource ).iterationOrder().equals( target.iterationOrder() );
+
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		final long size = target.size();
+		final long taskSize = taskSize( size );
+		for ( long from = 0; from < size; from += taskSize )
+		{
+			final long start = from;
+			final long length = Math.min( taskSize, size - from );
+			tasks.add( () -> {
+				if ( sameOrder )
+				{
+					final Cursor< A > s = ( ( IterableInterval< A > ) zeroMinSource ).cursor();
+					final Cursor< B > t = target.cursor();
+					s.jumpFwd( start );
+					t.jumpFwd( start );
+					for ( long i = 0; i < length; ++i )
+						converter.convert( s.next(), t.next() );
+				}
+				else
+				{
+					final RandomAccess< A > s = zeroMinSource.randomAccess();
+					final Cursor< B > t = target.localizingCursor();
+					t.jumpFwd( start );
+					for ( long i = 0; i < length; ++i )
+					{
+						t.fwd();
+						s.setPosition( t );
+						converter.convert( s.get(), t.get() );
+					}
+				}
+				return null;
+			} );
+		}
+		invokeAll( tasks, service );
+	}
+
+	private static void checkDimensions( final RandomAccessibleInterval< ? > source, final Img< ? > target )
+	{
+		if ( !Intervals.equalDimensions( source, target ) )
+			throw new IllegalArgumentException( "Source and target dimensions differ: " + Util.printInterval( source ) + ", " + Util.printInterval( target ) );
+	}
+
+	private static boolean isZeroMin( final RandomAccessibleInterval< ? > interval )
+	{
+		for ( int d = 0; d < interval.numDimensions(); ++d )
+			if ( interval.min( d ) != 0 )
+				return false;
+		return true;
+	}
+
+	private static long taskSize( final long numPixels )
+	{
+		return Math.max( MIN_TASK_SIZE, numPixels / ( 4 * Runtime.getRuntime().availableProcessors() ) );
+	}
+
+	private static void invokeAll( final List< Callable< Void > > tasks, final ExecutorService service )
+	{
+		try
+		{
+			for ( final Future< Void > future : service.invokeAll( tasks ) )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+	}
 }
@@ -34,6 +34,9 @@
 
 package net.imglib2.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.Dimensions;
 import net.imglib2.FinalDimensions;
 import net.imglib2.FinalInterval;
@@ -301,6 +304,56 @@ public class Intervals
 		return new FinalInterval( min, max );
 	}
 
+	/**
+	 * Split the part of {@code interval} that is not contained in
+	 * {@code hole} into disjoint intervals. There are at most two intervals
+	 * per dimension: the slabs below and above {@code hole} in dimension
+	 * {@code d}, restricted to the extent of {@code hole} in the dimensions
+	 * before {@code d}.
+	 * 
+	 * @param interval
+	 *            input interval
+	 * @param hole
+	 *            interval to remove from {@code interval}
+	 * @return disjoint, non-empty intervals covering {@code interval} minus
+	 *         {@code hole}.
+	 */
+	public static List< FinalInterval > subtract( final Interval interval, final Interval hole )
+	{
+		assert interval.numDimensions() == hole.numDimensions();
+
+		final ArrayList< FinalInterval > slabs = new ArrayList< FinalInterval >();
+		final FinalInterval remaining = intersect( interval, hole );
+		if ( isEmpty( remaining ) )
+		{
+			slabs.add( new FinalInterval( interval ) );
+			return slabs;
+		}
+
+		final int n = interval.numDimensions();
+		final long[] min = minAsLongArray( interval );
+		final long[] max = maxAsLongArray( interval );
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( interval.min( d ) < remaining.min( d ) )
+			{
+				min[ d ] = interval.min( d );
+				max[ d ] = remaining.min( d ) - 1;
+				slabs.add( new FinalInterval( min, max ) );
+			}
+			if ( interval.max( d ) > remaining.max( d ) )
+			{
+				min[ d ] = remaining.max( d ) + 1;
+				max[ d ] = interval.max( d );
+				slabs.add( new FinalInterval( min, max ) );
+			}
+			// restrict the following slabs to the hole in this dimension
+			min[ d ] = remaining.min( d );
+			max[ d ] = remaining.max( d );
+		}
+		return slabs;
+	}
+
 	/**
 	 * Compute the smallest {@link Interval} containing the specified
 	 * {@link RealInterval}.
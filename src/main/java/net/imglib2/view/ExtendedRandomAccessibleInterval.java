@@ -34,6 +34,9 @@
 
 package net.imglib2.view;
 
+import java.util.List;
+
+import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -84,6 +87,54 @@ final public class ExtendedRandomAccessibleInterval< T, F extends RandomAccessib
 		return randomAccess();
 	}
 
+	/**
+	 * Get the part of {@code interval} in which all accesses within
+	 * {@code border} stay inside the source. For example, for a neighborhood
+	 * filter with radius {@code r} this is the region whose neighborhoods need
+	 * no out-of-bounds handling.
+	 * <p>
+	 * Accesses to the interior, expanded by {@code border}, are served by the
+	 * source directly (see {@link #randomAccess(Interval)}). Only the
+	 * {@link #getBorderSlabs(Interval, long...) border slabs} need the
+	 * out-of-bounds strategy, so iterating them separately runs most of the
+	 * work at unextended speed.
+	 * </p>
+	 * 
+	 * @param interval
+	 *            the interval to process.
+	 * @param border
+	 *            the extent of accesses around each position, for each
+	 *            dimension, or one value for all dimensions.
+	 * @return the interior, which may be empty (see
+	 *         {@link Intervals#isEmpty(Interval)}).
+	 */
+	public FinalInterval getInterior( final Interval interval, final long... border )
+	{
+		assert source.numDimensions() == interval.numDimensions();
+
+		final int n = source.numDimensions();
+		final long[] shrink = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			shrink[ d ] = -( border.length == 1 ? border[ 0 ] : border[ d ] );
+		return Intervals.intersect( interval, Intervals.expand( source, shrink ) );
+	}
+
+	/**
+	 * Get disjoint slabs covering the part of {@code interval} that is not in
+	 * the {@link #getInterior(Interval, long...) interior}. There are at most
+	 * two slabs per dimension.
+	 * 
+	 * @param interval
+	 *            the interval to process.
+	 * @param border
+	 *            the extent of accesses around each position, for each
+	 *            dimension, or one value for all dimensions.
+	 */
+	public List< FinalInterval > getBorderSlabs( final Interval interval, final long... border )
+	{
+		return Intervals.subtract( interval, getInterior( interval, border ) );
+	}
+
 	public F getSource()
 	{
 		return source;
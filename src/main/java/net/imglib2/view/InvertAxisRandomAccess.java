@@ -0,0 +1,280 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.AbstractEuclideanSpace;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.transform.integer.Mixed;
+
+/**
+ * Wrap a {@code source} RandomAccess which is related to this by a
+ * {@link Mixed} {@code transformToSource} that inverts a single axis, and
+ * translates. That is, the transform maps every component to itself, and
+ * inverts exactly one component.
+ *
+ * <p>
+ * Compared to {@link FullSourceMapMixedRandomAccess}, moves along all other
+ * axes are passed to the source RandomAccess directly.
+ * </p>
+ *
+ * @param <T>
+ */
+public final class InvertAxisRandomAccess< T > extends AbstractEuclideanSpace implements RandomAccess< T >
+{
+	private final RandomAccess< T > s;
+
+	private final long[] translation;
+
+	/**
+	 * the inverted axis.
+	 */
+	private final int axis;
+
+	private final long[] tmp;
+
+	InvertAxisRandomAccess( final RandomAccess< T > source, final Mixed transformToSource, final int axis )
+	{
+		super( transformToSource.numSourceDimensions() );
+
+		assert source.numDimensions() == transformToSource.numTargetDimensions();
+		assert n == transformToSource.numTargetDimensions();
+		assert transformToSource.getComponentInversion( axis );
+
+		s = source;
+		translation = new long[ n ];
+		transformToSource.getTranslation( translation );
+		this.axis = axis;
+
+		tmp = new long[ n ];
+	}
+
+	protected InvertAxisRandomAccess( final InvertAxisRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		s = randomAccess.s.copyRandomAccess();
+		translation = randomAccess.translation.clone();
+		axis = randomAccess.axis;
+
+		tmp = new long[ n ];
+	}
+
+	@Override
+	public void localize( final int[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getIntPosition( d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		assert d < n;
+		final int v = s.getIntPosition( d ) - ( int ) translation[ d ];
+		return d == axis ? -v : v;
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		assert d < n;
+		final long v = s.getLongPosition( d ) - translation[ d ];
+		return d == axis ? -v : v;
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return getLongPosition( d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return getLongPosition( d );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		assert d < n;
+		if ( d == axis )
+			s.bck( d );
+		else
+			s.fwd( d );
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		assert d < n;
+		if ( d == axis )
+			s.fwd( d );
+		else
+			s.bck( d );
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		assert d < n;
+		s.move( d == axis ? -distance : distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		assert d < n;
+		s.move( d == axis ? -distance : distance, d );
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		assert localizable.numDimensions() >= n;
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = localizable.getLongPosition( d );
+		tmp[ axis ] = -tmp[ axis ];
+		s.move( tmp );
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		assert distance.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = distance[ d ];
+		tmp[ axis ] = -tmp[ axis ];
+		s.move( tmp );
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		assert distance.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = distance[ d ];
+		tmp[ axis ] = -tmp[ axis ];
+		s.move( tmp );
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		assert localizable.numDimensions() >= n;
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = translation[ d ] + localizable.getLongPosition( d );
+		tmp[ axis ] = translation[ axis ] - localizable.getLongPosition( axis );
+		s.setPosition( tmp );
+	}
+
+	@Override
+	public void setPosition( final int[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = translation[ d ] + position[ d ];
+		tmp[ axis ] = translation[ axis ] - position[ axis ];
+		s.setPosition( tmp );
+	}
+
+	@Override
+	public void setPosition( final long[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = translation[ d ] + position[ d ];
+		tmp[ axis ] = translation[ axis ] - position[ axis ];
+		s.setPosition( tmp );
+	}
+
+	@Override
+	public void setPosition( final int position, final int d )
+	{
+		assert d < n;
+		s.setPosition( translation[ d ] + ( d == axis ? -position : position ), d );
+	}
+
+	@Override
+	public void setPosition( final long position, final int d )
+	{
+		assert d < n;
+		s.setPosition( translation[ d ] + ( d == axis ? -position : position ), d );
+	}
+
+	@Override
+	public T get()
+	{
+		return s.get();
+	}
+
+	@Override
+	public InvertAxisRandomAccess< T > copy()
+	{
+		return new InvertAxisRandomAccess< T >( this );
+	}
+
+	@Override
+	public InvertAxisRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.AbstractEuclideanSpace;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.transform.integer.Mixed;
+import net.imglib2.transform.integer.Slicing;
+
+/**
+ * Wrap a {@code source} RandomAccess which is related to this by a
+ * {@link Slicing} (or {@link Mixed}) {@code transformToSource} that maps the
+ * {@code n} dimensions of this to the first {@code n} dimensions of the
+ * source, possibly translated, and fixes the remaining source dimensions. This
+ * is the hyperslice of the trailing dimensions, e.g., a plane of a 3D image or
+ * a time-point of a time-series.
+ *
+ * <p>
+ * Compared to {@link FullSourceMapSlicingRandomAccess}, moves are passed to
+ * the source RandomAccess without looking up the source dimension.
+ * </p>
+ *
+ * @param <T>
+ */
+public final class LeadingDimensionsSlicingRandomAccess< T > extends AbstractEuclideanSpace implements RandomAccess< T >
+{
+	private final RandomAccess< T > s;
+
+	private final long[] translation;
+
+	/**
+	 * positions and distances in the source. Components {@code n} and higher
+	 * are fixed to the translation and to 0, respectively.
+	 */
+	private final long[] tmpPosition;
+
+	private final long[] tmpDistance;
+
+	LeadingDimensionsSlicingRandomAccess( final RandomAccess< T > source, final Mixed transformToSource )
+	{
+		super( transformToSource.numSourceDimensions() );
+
+		assert source.numDimensions() == transformToSource.numTargetDimensions();
+
+		s = source;
+		final int m = transformToSource.numTargetDimensions();
+		translation = new long[ m ];
+		transformToSource.getTranslation( translation );
+		for ( int d = n; d < m; ++d )
+			s.setPosition( translation[ d ], d );
+
+		tmpPosition = translation.clone();
+		tmpDistance = new long[ m ];
+	}
+
+	protected LeadingDimensionsSlicingRandomAccess( final LeadingDimensionsSlicingRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		s = randomAccess.s.copyRandomAccess();
+		translation = randomAccess.translation.clone();
+
+		tmpPosition = translation.clone();
+		tmpDistance = new long[ translation.length ];
+	}
+
+	@Override
+	public void localize( final int[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = s.getIntPosition( d ) - ( int ) translation[ d ];
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = s.getLongPosition( d ) - translation[ d ];
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		assert d < n;
+		return s.getIntPosition( d ) - ( int ) translation[ d ];
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		assert d < n;
+		return s.getLongPosition( d ) - translation[ d ];
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return getLongPosition( d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return getLongPosition( d );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		assert d < n;
+		s.fwd( d );
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		assert d < n;
+		s.bck( d );
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		assert d < n;
+		s.move( distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		assert d < n;
+		s.move( distance, d );
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		assert localizable.numDimensions() >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpDistance[ d ] = localizable.getLongPosition( d );
+		s.move( tmpDistance );
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		assert distance.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpDistance[ d ] = distance[ d ];
+		s.move( tmpDistance );
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		assert distance.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpDistance[ d ] = distance[ d ];
+		s.move( tmpDistance );
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		assert localizable.numDimensions() >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpPosition[ d ] = translation[ d ] + localizable.getLongPosition( d );
+		s.setPosition( tmpPosition );
+	}
+
+	@Override
+	public void setPosition( final int[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpPosition[ d ] = translation[ d ] + position[ d ];
+		s.setPosition( tmpPosition );
+	}
+
+	@Override
+	public void setPosition( final long[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpPosition[ d ] = translation[ d ] + position[ d ];
+		s.setPosition( tmpPosition );
+	}
+
+	@Override
+	public void setPosition( final int position, final int d )
+	{
+		assert d < n;
+		s.setPosition( translation[ d ] + position, d );
+	}
+
+	@Override
+	public void setPosition( final long position, final int d )
+	{
+		assert d < n;
+		s.setPosition( translation[ d ] + position, d );
+	}
+
+	@Override
+	public T get()
+	{
+		return s.get();
+	}
+
+	@Override
+	public LeadingDimensionsSlicingRandomAccess< T > copy()
+	{
+		return new LeadingDimensionsSlicingRandomAccess< T >( this );
+	}
+
+	@Override
+	public LeadingDimensionsSlicingRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
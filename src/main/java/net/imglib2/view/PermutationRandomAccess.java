@@ -0,0 +1,287 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.AbstractEuclideanSpace;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.transform.integer.Mixed;
+
+/**
+ * Wrap a {@code source} RandomAccess which is related to this by a
+ * {@link Mixed} {@code transformToSource} that only permutes and translates
+ * the axes. That is, the transform maps every component to exactly one
+ * component, and inverts none.
+ *
+ * <p>
+ * Compared to {@link FullSourceMapMixedRandomAccess}, this saves the test for
+ * axis inversion in every move.
+ * </p>
+ *
+ * @param <T>
+ */
+public final class PermutationRandomAccess< T > extends AbstractEuclideanSpace implements RandomAccess< T >
+{
+	private final RandomAccess< T > s;
+
+	private final long[] translation;
+
+	/**
+	 * for each dimension of this, the corresponding source dimension.
+	 */
+	private final int[] sourceComponent;
+
+	private final long[] tmpPosition;
+
+	private final long[] tmpDistance;
+
+	PermutationRandomAccess( final RandomAccess< T > source, final Mixed transformToSource )
+	{
+		super( transformToSource.numSourceDimensions() );
+
+		assert source.numDimensions() == transformToSource.numTargetDimensions();
+		assert n == transformToSource.numTargetDimensions();
+
+		s = source;
+		translation = new long[ n ];
+		final int[] targetComponent = new int[ n ];
+		transformToSource.getTranslation( translation );
+		transformToSource.getComponentMapping( targetComponent );
+
+		sourceComponent = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			sourceComponent[ targetComponent[ d ] ] = d;
+
+		tmpPosition = new long[ n ];
+		tmpDistance = new long[ n ];
+	}
+
+	protected PermutationRandomAccess( final PermutationRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		s = randomAccess.s.copyRandomAccess();
+		translation = randomAccess.translation.clone();
+		sourceComponent = randomAccess.sourceComponent.clone();
+
+		tmpPosition = new long[ n ];
+		tmpDistance = new long[ n ];
+	}
+
+	@Override
+	public void localize( final int[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getIntPosition( d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		assert d < n;
+		final int td = sourceComponent[ d ];
+		return s.getIntPosition( td ) - ( int ) translation[ td ];
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		assert d < n;
+		final int td = sourceComponent[ d ];
+		return s.getLongPosition( td ) - translation[ td ];
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = getLongPosition( d );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return getLongPosition( d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return getLongPosition( d );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		assert d < n;
+		s.fwd( sourceComponent[ d ] );
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		assert d < n;
+		s.bck( sourceComponent[ d ] );
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		assert d < n;
+		s.move( distance, sourceComponent[ d ] );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		assert d < n;
+		s.move( distance, sourceComponent[ d ] );
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		assert localizable.numDimensions() >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpDistance[ sourceComponent[ d ] ] = localizable.getLongPosition( d );
+		s.move( tmpDistance );
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		assert distance.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpDistance[ sourceComponent[ d ] ] = distance[ d ];
+		s.move( tmpDistance );
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		assert distance.length >= n;
+		for ( int d = 0; d < n; ++d )
+			tmpDistance[ sourceComponent[ d ] ] = distance[ d ];
+		s.move( tmpDistance );
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		assert localizable.numDimensions() >= n;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int td = sourceComponent[ d ];
+			tmpPosition[ td ] = translation[ td ] + localizable.getLongPosition( d );
+		}
+		s.setPosition( tmpPosition );
+	}
+
+	@Override
+	public void setPosition( final int[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int td = sourceComponent[ d ];
+			tmpPosition[ td ] = translation[ td ] + position[ d ];
+		}
+		s.setPosition( tmpPosition );
+	}
+
+	@Override
+	public void setPosition( final long[] position )
+	{
+		assert position.length >= n;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int td = sourceComponent[ d ];
+			tmpPosition[ td ] = translation[ td ] + position[ d ];
+		}
+		s.setPosition( tmpPosition );
+	}
+
+	@Override
+	public void setPosition( final int position, final int d )
+	{
+		assert d < n;
+		final int td = sourceComponent[ d ];
+		s.setPosition( translation[ td ] + position, td );
+	}
+
+	@Override
+	public void setPosition( final long position, final int d )
+	{
+		assert d < n;
+		final int td = sourceComponent[ d ];
+		s.setPosition( translation[ td ] + position, td );
+	}
+
+	@Override
+	public T get()
+	{
+		return s.get();
+	}
+
+	@Override
+	public PermutationRandomAccess< T > copy()
+	{
+		return new PermutationRandomAccess< T >( this );
+	}
+
+	@Override
+	public PermutationRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -35,6 +35,9 @@ package net.imglib2.view;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
 
 import net.imglib2.AbstractInterval;
 import net.imglib2.FinalInterval;
@@ -48,6 +51,12 @@ import net.imglib2.util.Util;
 /**
  * A stack of <em>n</em>-dimensional {@link RandomAccessibleInterval}s, forming
  * a <em>(n+1)</em>-dimensional {@link RandomAccessibleInterval}.
+ * <p>
+ * The slices are independent, so they can be processed in parallel directly,
+ * without going through the {@link RandomAccess}es of the stack, see
+ * {@link #forEachSlice(ObjIntConsumer)}. The stacks created by
+ * {@link Views#stack(List)} are {@link StackView}s.
+ * </p>
  * 
  * @param <T>
  *            the pixel type.
@@ -165,6 +174,27 @@ public class StackView< T > extends AbstractInterval implements RandomAccessible
 	{
 		return stackAccessMode;
 	}
+
+	/**
+	 * Apply {@code action} to every source slice and its index along the last
+	 * dimension, in parallel in the common {@link ForkJoinPool}, and wait until
+	 * all slices are processed.
+	 */
+	public void forEachSlice( final ObjIntConsumer< RandomAccessibleInterval< T > > action )
+	{
+		forEachSlice( ForkJoinPool.commonPool(), action );
+	}
+
+	/**
+	 * Apply {@code action} to every source slice and its index along the last
+	 * dimension, in parallel in {@code pool}, and wait until all slices are
+	 * processed.
+	 */
+	public void forEachSlice( final ForkJoinPool pool, final ObjIntConsumer< RandomAccessibleInterval< T > > action )
+	{
+		// a parallel stream started from a task of pool runs in pool
+		pool.submit( () -> IntStream.range( 0, slices.length ).parallel().forEach( z -> action.accept( slices[ z ], z ) ) ).join();
+	}
 	
 	/**
 	 * A {@link RandomAccess} on a {@link StackView}. It keeps a list of
@@ -33,11 +33,21 @@
  */
 package net.imglib2.view;
 
+import java.util.Iterator;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.FlatIterationOrder;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealPositionable;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArraySubsampleCursor;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellSubIntervalCursor;
 
 /**
  * {@link SubsampleIntervalView} is a view that provides access to only every
@@ -49,19 +59,30 @@ import net.imglib2.RealPositionable;
  * {@link SubsampleIntervalView} return scaled and translated coordinates that
  * are generated on-the-fly. Localization is thus moderately inefficient to the
  * benefit of faster positioning. Don't ask for what you already know ;).
+ * <p>
+ * The view is iterated in flat order. If the source is an {@link ArrayImg} or
+ * an {@link AbstractCellImg}, its {@link Cursor Cursors} step through the
+ * source storage directly, skipping cells that contain no sample.
+ * </p>
  * 
  * @author Stephan Saalfeld
  */
-public class SubsampleIntervalView< T > extends SubsampleView< T > implements RandomAccessibleInterval< T >
+public class SubsampleIntervalView< T > extends SubsampleView< T > implements RandomAccessibleInterval< T >, IterableInterval< T >
 {
 	final protected long[] dimensions;
 
 	final protected long[] max;
 
+	/**
+	 * the source before translating it to the origin.
+	 */
+	final protected RandomAccessibleInterval< T > intervalSource;
+
 	public SubsampleIntervalView( final RandomAccessibleInterval< T > source, final long step )
 	{
 		super( Views.zeroMin( source ), step );
 
+		intervalSource = source;
 		dimensions = new long[ steps.length ];
 		max = new long[ steps.length ];
 		for ( int d = 0; d < steps.length; ++d )
@@ -76,6 +97,7 @@ public class SubsampleIntervalView< T > extends SubsampleView< T > implements Ra
 	{
 		super( Views.zeroMin( source ), steps );
 
+		intervalSource = source;
 		dimensions = new long[ steps.length ];
 		max = new long[ steps.length ];
 		for ( int d = 0; d < steps.length; ++d )
@@ -179,4 +201,65 @@ public class SubsampleIntervalView< T > extends SubsampleView< T > implements Ra
 	{
 		return dimensions[ d ];
 	}
+
+	@Override
+	public long size()
+	{
+		long size = 1;
+		for ( int d = 0; d < steps.length; ++d )
+			size *= dimensions[ d ];
+		return size;
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return cursor().next();
+	}
+
+	/**
+	 * Flat iteration order, unless the source is an {@link AbstractCellImg}
+	 * and the samples span more than one cell in any but the last dimension.
+	 */
+	@Override
+	public Object iterationOrder()
+	{
+		if ( intervalSource instanceof AbstractCellImg )
+		{
+			final AbstractCellImg< ?, ?, ?, ? > img = ( AbstractCellImg< ?, ?, ?, ? > ) intervalSource;
+			for ( int d = 0; d < steps.length - 1; ++d )
+				if ( max[ d ] * steps[ d ] / img.getCellGrid().cellDimension( d ) != 0 )
+					return this;
+		}
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public Iterator< T > iterator()
+	{
+		return cursor();
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public Cursor< T > cursor()
+	{
+		if ( intervalSource instanceof ArrayImg )
+			return new ArraySubsampleCursor( ( ArrayImg ) intervalSource, steps );
+		if ( intervalSource instanceof AbstractCellImg && size() > 0 )
+		{
+			// the source positions of the first and last sample
+			final long[] sourceMax = new long[ steps.length ];
+			for ( int d = 0; d < steps.length; ++d )
+				sourceMax[ d ] = max[ d ] * steps[ d ];
+			return new CellSubIntervalCursor( ( AbstractCellImg ) intervalSource, new FinalInterval( new long[ steps.length ], sourceMax ), steps );
+		}
+		return new RandomAccessibleIntervalCursor< T >( this );
+	}
+
+	@Override
+	public Cursor< T > localizingCursor()
+	{
+		return cursor();
+	}
 }
@@ -263,6 +263,83 @@ public class TransformBuilder< T >
 		return true;
 	}
 
+	/**
+	 * @return whether t maps every component to exactly one component without
+	 *         inversion, i.e., it is a permutation of the axes followed by a
+	 *         translation.
+	 */
+	public static boolean isPermutation( final Mixed t )
+	{
+		final int n = t.numSourceDimensions();
+		final int m = t.numTargetDimensions();
+		if ( n != m )
+			return false;
+
+		final boolean[] sourceMapped = new boolean[ n ];
+		for ( int d = 0; d < m; ++d )
+		{
+			if ( t.getComponentZero( d ) )
+				return false;
+			if ( t.getComponentInversion( d ) )
+				return false;
+			final int e = t.getComponentMapping( d );
+			if ( sourceMapped[ e ] )
+				return false;
+			sourceMapped[ e ] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the only inverted axis, if t maps every component to itself and
+	 *         inverts exactly one of them, or -1 otherwise.
+	 */
+	public static int getSingleInvertedAxis( final Mixed t )
+	{
+		final int n = t.numSourceDimensions();
+		final int m = t.numTargetDimensions();
+		if ( n != m )
+			return -1;
+
+		int axis = -1;
+		for ( int d = 0; d < m; ++d )
+		{
+			if ( t.getComponentZero( d ) )
+				return -1;
+			if ( t.getComponentMapping( d ) != d )
+				return -1;
+			if ( t.getComponentInversion( d ) )
+			{
+				if ( axis >= 0 )
+					return -1;
+				axis = d;
+			}
+		}
+		return axis;
+	}
+
+	/**
+	 * @return whether t maps the source dimensions to the leading target
+	 *         dimensions, in order and without inversion, and fixes the
+	 *         trailing target dimensions.
+	 */
+	public static boolean isLeadingDimensionsSlicing( final Mixed t )
+	{
+		final int n = t.numSourceDimensions();
+		final int m = t.numTargetDimensions();
+		if ( n > m )
+			return false;
+
+		for ( int d = 0; d < m; ++d )
+		{
+			if ( t.getComponentZero( d ) != ( d >= n ) )
+				return false;
+			if ( d < n && ( t.getComponentMapping( d ) != d || t.getComponentInversion( d ) ) )
+				return false;
+		}
+		return true;
+	}
+
 	public static boolean isSlicing( final Mixed t )
 	{
 		final int n = t.numSourceDimensions();
@@ -391,9 +468,17 @@ public class TransformBuilder< T >
 		};
 	}
 
+	/**
+	 * Pure permutations, single-axis inversions and hyperslices of trailing
+	 * dimensions (each with translation) are wrapped in specialized
+	 * RandomAccesses that avoid the general per-dimension mapping logic.
+	 */
 	protected RandomAccessible< T > wrapMixedTransform( final RandomAccessible< T > s, final MixedTransform t )
 	{
 		final boolean full = t.hasFullSourceMapping();
+		final boolean permutation = isPermutation( t );
+		final int invertedAxis = getSingleInvertedAxis( t );
+		final boolean leading = isLeadingDimensionsSlicing( t );
 		return new RandomAccessible< T >()
 		{
 			@Override
@@ -405,17 +490,26 @@ public class TransformBuilder< T >
 			@Override
 			public RandomAccess< T > randomAccess()
 			{
-				if ( full )
-					return new FullSourceMapMixedRandomAccess< T >( s.randomAccess(), t );
-				return new MixedRandomAccess< T >( s.randomAccess(), t );
+				return wrap( s.randomAccess() );
 			}
 
 			@Override
 			public RandomAccess< T > randomAccess( final Interval interval )
 			{
+				return wrap( s.randomAccess() );
+			}
+
+			private RandomAccess< T > wrap( final RandomAccess< T > sourceAccess )
+			{
+				if ( permutation )
+					return new PermutationRandomAccess< T >( sourceAccess, t );
+				if ( invertedAxis >= 0 )
+					return new InvertAxisRandomAccess< T >( sourceAccess, t, invertedAxis );
+				if ( leading )
+					return new LeadingDimensionsSlicingRandomAccess< T >( sourceAccess, t );
 				if ( full )
-					return new FullSourceMapMixedRandomAccess< T >( s.randomAccess(), t );
-				return new MixedRandomAccess< T >( s.randomAccess(), t );
+					return new FullSourceMapMixedRandomAccess< T >( sourceAccess, t );
+				return new MixedRandomAccess< T >( sourceAccess, t );
 			}
 		};
 	}
@@ -444,9 +538,14 @@ public class TransformBuilder< T >
 		};
 	}
 
+	/**
+	 * Hyperslices of trailing dimensions are wrapped in a specialized
+	 * RandomAccess that passes moves to the source unchanged.
+	 */
 	protected RandomAccessible< T > wrapSlicingTransform( final RandomAccessible< T > s, final SlicingTransform t )
 	{
 		final boolean full = t.hasFullSourceMapping();
+		final boolean leading = isLeadingDimensionsSlicing( t );
 		return new RandomAccessible< T >()
 		{
 			@Override
@@ -458,17 +557,22 @@ public class TransformBuilder< T >
 			@Override
 			public RandomAccess< T > randomAccess()
 			{
-				if ( full )
-					return new FullSourceMapSlicingRandomAccess< T >( s.randomAccess(), t );
-				return new SlicingRandomAccess< T >( s.randomAccess(), t );
+				return wrap( s.randomAccess() );
 			}
 
 			@Override
 			public RandomAccess< T > randomAccess( final Interval interval )
 			{
+				return wrap( s.randomAccess() );
+			}
+
+			private RandomAccess< T > wrap( final RandomAccess< T > sourceAccess )
+			{
+				if ( leading )
+					return new LeadingDimensionsSlicingRandomAccess< T >( sourceAccess, t );
 				if ( full )
-					return new FullSourceMapSlicingRandomAccess< T >( s.randomAccess(), t );
-				return new SlicingRandomAccess< T >( s.randomAccess(), t );
+					return new FullSourceMapSlicingRandomAccess< T >( sourceAccess, t );
+				return new SlicingRandomAccess< T >( sourceAccess, t );
 			}
 		};
 	}
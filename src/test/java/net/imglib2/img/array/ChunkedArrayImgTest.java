@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+public class ChunkedArrayImgTest
+{
+	private final long[] dimensions = { 13, 7, 5 };
+
+	// 64 pixels per chunk
+	private final ChunkedArrayImgFactory< IntType > factory = new ChunkedArrayImgFactory< IntType >( 6 );
+
+	private ChunkedArrayImg< IntType, ? > createIndexImg()
+	{
+		final ChunkedArrayImg< IntType, ? > img = factory.create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		return img;
+	}
+
+	@Test
+	public void testChunks()
+	{
+		final ChunkedArrayImg< IntType, ? > img = createIndexImg();
+		assertEquals( 8, img.numChunks() );
+		assertEquals( 13 * 7 * 5 - 7 * 64, ( ( int[] ) ( ( ArrayDataAccess< ? > ) img.getChunk( 7 ) ).getCurrentStorageArray() ).length );
+		assertEquals( 64 + 5, ( ( int[] ) ( ( ArrayDataAccess< ? > ) img.getChunk( 1 ) ).getCurrentStorageArray() )[ 5 ] );
+	}
+
+	@Test
+	public void testCursors()
+	{
+		final ChunkedArrayImg< IntType, ? > img = createIndexImg();
+		final long[] expected = new long[ 3 ];
+		final long[] actual = new long[ 3 ];
+		final ChunkedArrayCursor< IntType > c = img.cursor();
+		final ChunkedArrayLocalizingCursor< IntType > lc = img.localizingCursor();
+		int i = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			lc.fwd();
+			IntervalIndexer.indexToPosition( i, dimensions, expected );
+			assertEquals( i, c.get().get() );
+			assertEquals( i, lc.get().get() );
+			c.localize( actual );
+			assertArrayEquals( expected, actual );
+			lc.localize( actual );
+			assertArrayEquals( expected, actual );
+			++i;
+		}
+		assertFalse( lc.hasNext() );
+		assertEquals( img.size(), i );
+
+		c.reset();
+		c.jumpFwd( 200 );
+		assertEquals( 199, c.get().get() );
+		final Cursor< IntType > copy = c.copyCursor();
+		copy.fwd();
+		assertEquals( 200, copy.get().get() );
+		assertEquals( 199, c.get().get() );
+
+		lc.reset();
+		lc.jumpFwd( 129 );
+		lc.fwd();
+		assertEquals( 129, lc.get().get() );
+		assertEquals( 129 % 13, lc.getLongPosition( 0 ) );
+	}
+
+	@Test
+	public void testEmptyImg()
+	{
+		final ChunkedArrayImg< IntType, ? > img = factory.create( new long[] { 13, 0, 5 }, new IntType() );
+		assertEquals( 0, img.numChunks() );
+		assertFalse( img.cursor().hasNext() );
+		assertFalse( img.localizingCursor().hasNext() );
+		assertFalse( img.cursor().copyCursor().hasNext() );
+		img.randomAccess().copyRandomAccess();
+		for ( final IntType t : img )
+			throw new AssertionError( "empty image has element " + t );
+	}
+
+	@Test
+	public void testRandomAccess()
+	{
+		final ChunkedArrayImg< IntType, ? > img = createIndexImg();
+		final RandomAccess< IntType > a = img.randomAccess();
+		final Random random = new Random( 1 );
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			a.setPosition( pos );
+			assertEquals( IntervalIndexer.positionToIndex( pos, dimensions ), a.get().get() );
+		}
+
+		// move out of bounds and back
+		a.setPosition( new long[] { 12, 6, 4 } );
+		a.move( 20, 2 );
+		a.fwd( 0 );
+		a.move( -20, 2 );
+		a.bck( 0 );
+		assertEquals( img.size() - 1, a.get().get() );
+		a.setPosition( 0, 2 );
+		assertEquals( 12 + 6 * 13, a.copyRandomAccess().get().get() );
+	}
+
+	@Test
+	public void testCopyAndBits()
+	{
+		final ChunkedArrayImg< IntType, ? > img = createIndexImg();
+		int i = 0;
+		for ( final IntType t : img.copy() )
+			assertEquals( i++, t.get() );
+
+		final ChunkedArrayImg< BitType, ? > bits = new ChunkedArrayImgFactory< BitType >( 6 ).create( dimensions, new BitType() );
+		i = 0;
+		for ( final BitType t : bits )
+			t.set( i++ % 3 == 0 );
+		i = 0;
+		for ( final BitType t : bits )
+			assertEquals( i++ % 3 == 0, t.get() );
+	}
+
+	@Test
+	public void testDefaultChunkShift()
+	{
+		final ChunkedArrayImgFactory< IntType > f = new ChunkedArrayImgFactory< IntType >();
+		assertEquals( 30, f.getChunkShift( new Fraction() ) );
+		assertEquals( 29, f.getChunkShift( new Fraction( 2, 1 ) ) );
+		assertEquals( 30, f.getChunkShift( new Fraction( 1, 64 ) ) );
+	}
+}
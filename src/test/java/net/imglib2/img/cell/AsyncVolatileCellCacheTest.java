@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+public class AsyncVolatileCellCacheTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 40, 30 }, new int[] { 16, 16 } );
+
+	@Test
+	public void testPlaceholderThenValid() throws InterruptedException
+	{
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final AtomicInteger loads = new AtomicInteger();
+		final Get< Cell< VolatileFloatArray > > valid = AsyncVolatileCellCache.emptyCells( grid, new Fraction(), new VolatileFloatArray( 1, true ) );
+		final Get< Cell< VolatileFloatArray > > loader = index -> {
+			try
+			{
+				release.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			loads.incrementAndGet();
+			final Cell< VolatileFloatArray > cell = valid.get( index );
+			final float[] data = cell.getData().getCurrentStorageArray();
+			for ( int i = 0; i < data.length; ++i )
+				data[ i ] = 1;
+			return new Cell<>( new int[] { cell.dimension( 0 ), cell.dimension( 1 ) }, new long[] { cell.min( 0 ), cell.min( 1 ) }, new VolatileFloatArray( data, true ) );
+		};
+
+		final AsyncVolatileCellCache< VolatileFloatArray > cache = new AsyncVolatileCellCache<>(
+				new BoundedCellCache<>( loader, Long.MAX_VALUE ),
+				AsyncVolatileCellCache.emptyCells( grid, new Fraction(), new VolatileFloatArray( 1, false ) ),
+				2 );
+		// the random access initially requests cell 0, then cell 2
+		final CountDownLatch loaded = new CountDownLatch( 2 );
+		cache.addLoadListener( index -> loaded.countDown() );
+
+		final LazyCellImg< FloatType, VolatileFloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+
+		final CellRandomAccess< FloatType, Cell< VolatileFloatArray > > access = img.randomAccess();
+		access.setPosition( new long[] { 35, 5 } );
+		final Cell< VolatileFloatArray > placeholder = access.getCell();
+		assertFalse( placeholder.getData().isValid() );
+		assertEquals( 0, access.get().get(), 0 );
+		assertSame( placeholder, cache.get( 2 ) );
+		assertEquals( 2, cache.getPendingCount() );
+
+		release.countDown();
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+
+		final Cell< VolatileFloatArray > cell = cache.get( 2 );
+		assertTrue( cell.getData().isValid() );
+		assertEquals( 0, cache.getPendingCount() );
+		assertEquals( 2, loads.get() );
+
+		final CellRandomAccess< FloatType, Cell< VolatileFloatArray > > access2 = img.randomAccess();
+		access2.setPosition( new long[] { 35, 5 } );
+		assertEquals( 1, access2.get().get(), 0 );
+
+		cache.shutdown();
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.BoundedCellCache.EvictionPolicy;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class BoundedCellCacheTest
+{
+	private final long[] dimensions = new long[] { 100, 50, 3 };
+
+	private final int[] cellDimensions = new int[] { 10, 10, 1 };
+
+	private final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+
+	/** size of a full 10x10x1 float cell */
+	private final long cellBytes = 400;
+
+	private class CountingLoader implements Get< Cell< FloatArray > >
+	{
+		final AtomicInteger loads = new AtomicInteger();
+
+		@Override
+		public Cell< FloatArray > get( final long index )
+		{
+			loads.incrementAndGet();
+			final long[] cellMin = new long[ grid.numDimensions() ];
+			final int[] cellDims = new int[ grid.numDimensions() ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final float[] data = new float[ cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ] ];
+			for ( int i = 0; i < data.length; ++i )
+				data[ i ] = index;
+			return new Cell<>( cellDims, cellMin, new FloatArray( data ) );
+		}
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		final CountingLoader loader = new CountingLoader();
+		final BoundedCellCache< FloatArray > cache = new BoundedCellCache<>( loader, 100 * cellBytes );
+
+		final Cell< FloatArray > cell = cache.get( 3 );
+		assertSame( cell, cache.get( 3 ) );
+		assertSame( cell, cache.get( 3 ) );
+		cache.get( 4 );
+
+		assertEquals( 2, loader.loads.get() );
+		assertEquals( 2, cache.getMissCount() );
+		assertEquals( 2, cache.getHitCount() );
+		assertEquals( 2 * cellBytes, cache.getCurrentBytes() );
+	}
+
+	@Test
+	public void testLruEviction()
+	{
+		final CountingLoader loader = new CountingLoader();
+		final BoundedCellCache< FloatArray > cache = new BoundedCellCache<>( loader, 2 * cellBytes );
+
+		cache.get( 0 );
+		cache.get( 1 );
+		cache.get( 0 ); // 1 is now least recently used
+		cache.get( 2 ); // evicts 1
+		assertEquals( 1, cache.getEvictionCount() );
+		assertTrue( cache.getCurrentBytes() <= cache.getMaxBytes() );
+
+		cache.get( 0 );
+		cache.get( 2 );
+		assertEquals( 3, loader.loads.get() );
+
+		cache.get( 1 );
+		assertEquals( 4, loader.loads.get() );
+	}
+
+	@Test
+	public void testSoftReferenceEviction()
+	{
+		final CountingLoader loader = new CountingLoader();
+		final BoundedCellCache< FloatArray > cache = new BoundedCellCache<>( loader, cellBytes, EvictionPolicy.SOFT_REFERENCE );
+
+		final Cell< FloatArray > cell = cache.get( 0 );
+		cache.get( 1 ); // evicts 0 from the strongly held cells
+		assertEquals( 1, cache.getEvictionCount() );
+		assertEquals( cellBytes, cache.getCurrentBytes() );
+
+		// cell 0 is still strongly reachable from here, so it must be re-used
+		assertSame( cell, cache.get( 0 ) );
+		assertEquals( 2, loader.loads.get() );
+	}
+
+	@Test
+	public void testInvalidateAll()
+	{
+		final CountingLoader loader = new CountingLoader();
+		final BoundedCellCache< FloatArray > cache = new BoundedCellCache<>( loader, 100 * cellBytes );
+		cache.get( 0 );
+		cache.invalidateAll();
+		assertEquals( 0, cache.getCurrentBytes() );
+		cache.get( 0 );
+		assertEquals( 2, loader.loads.get() );
+	}
+
+	@Test
+	public void testConcurrentSingleLoad() throws Exception
+	{
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final CountingLoader counting = new CountingLoader();
+		final Get< Cell< FloatArray > > slowLoader = index -> {
+			try
+			{
+				release.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			return counting.get( index );
+		};
+		final BoundedCellCache< FloatArray > cache = new BoundedCellCache<>( slowLoader, 100 * cellBytes );
+
+		final int numThreads = 8;
+		final ExecutorService es = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Future< Cell< FloatArray > > > futures = new ArrayList<>();
+		for ( int i = 0; i < numThreads; ++i )
+			futures.add( es.submit( ( Callable< Cell< FloatArray > > ) () -> cache.get( 7 ) ) );
+		Thread.sleep( 50 );
+		release.countDown();
+
+		final Cell< FloatArray > cell = futures.get( 0 ).get();
+		for ( final Future< Cell< FloatArray > > f : futures )
+			assertSame( cell, f.get() );
+		es.shutdown();
+
+		assertEquals( 1, counting.loads.get() );
+		assertEquals( 1, cache.getMissCount() );
+		assertEquals( numThreads - 1, cache.getHitCount() );
+	}
+
+	@Test
+	public void testLazyCellImg()
+	{
+		final CountingLoader loader = new CountingLoader();
+		final BoundedCellCache< FloatArray > cache = new BoundedCellCache<>( loader, 1000 * cellBytes );
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+
+		final long numCells = grid.getGridDimensions()[ 0 ] * grid.getGridDimensions()[ 1 ] * grid.getGridDimensions()[ 2 ];
+		for ( int pass = 0; pass < 2; ++pass )
+		{
+			final Cursor< FloatType > c = img.localizingCursor();
+			final long[] pos = new long[ 3 ];
+			final long[] cellPos = new long[ 3 ];
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				c.localize( pos );
+				grid.getCellPosition( pos, cellPos );
+				final long index = cellPos[ 0 ] + grid.gridDimension( 0 ) * ( cellPos[ 1 ] + grid.gridDimension( 1 ) * cellPos[ 2 ] );
+				assertEquals( index, c.get().get(), 0 );
+			}
+		}
+		assertEquals( numCells, loader.loads.get() );
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+public class CellExecutorTest
+{
+	private final long[] dimensions = { 50, 37 };
+
+	@Test
+	public void testForEachCell()
+	{
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 16 ).create( dimensions, new IntType() );
+		final CellExecutor executor = new CellExecutor( new ForkJoinPool( 3 ) );
+		final AtomicLong maxProgress = new AtomicLong();
+		executor.setProgressListener( ( n, numCells ) -> {
+			assertEquals( 12, numCells );
+			maxProgress.accumulateAndGet( n, Math::max );
+		} );
+		executor.forEachCell( img, cell -> {
+			for ( final IntType t : Views.iterable( cell ) )
+				t.inc();
+		} );
+		assertEquals( 12, maxProgress.get() );
+		for ( final IntType t : img )
+			assertEquals( 1, t.get() );
+	}
+
+	@Test
+	public void testHalo()
+	{
+		final ArrayImg< IntType, ? > source = ArrayImgs.ints( dimensions );
+		int i = 0;
+		for ( final IntType t : source )
+			t.set( i++ );
+
+		// sum of the 3x3 neighborhood, 0 outside
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 8 ).create( dimensions, new IntType() );
+		new CellExecutor().forEachCell( img, source, new OutOfBoundsConstantValueFactory< IntType, RandomAccessibleInterval< IntType > >( new IntType() ), new long[] { 1, 1 }, ( cell, input ) -> {
+			final Cursor< IntType > c = Views.iterable( cell ).localizingCursor();
+			final RandomAccess< IntType > a = input.randomAccess();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				int sum = 0;
+				for ( int y = -1; y <= 1; ++y )
+					for ( int x = -1; x <= 1; ++x )
+					{
+						a.setPosition( c.getLongPosition( 0 ) + x, 0 );
+						a.setPosition( c.getLongPosition( 1 ) + y, 1 );
+						sum += a.get().get();
+					}
+				c.get().set( sum );
+			}
+		} );
+
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			int expected = 0;
+			for ( long y = c.getLongPosition( 1 ) - 1; y <= c.getLongPosition( 1 ) + 1; ++y )
+				for ( long x = c.getLongPosition( 0 ) - 1; x <= c.getLongPosition( 0 ) + 1; ++x )
+					if ( x >= 0 && y >= 0 && x < dimensions[ 0 ] && y < dimensions[ 1 ] )
+						expected += x + y * dimensions[ 0 ];
+			assertEquals( expected, c.get().get() );
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractSubIntervalIterableCursorTest;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellIterableSubIntervalCursorTest extends AbstractSubIntervalIterableCursorTest< CellImg< IntType, ? > >
+{
+	/** Interval within a single cell in all but the last dimension */
+	protected Interval intervalFlat;
+
+	@Before
+	public void createSourceData()
+	{
+		dimensions = new long[] { 23, 31, 11, 7, 3 };
+
+		// cells of 32 x 4 x 3 x 2 x 2, such that the first 18 elements of
+		// intervalFast and intervalShifted are in one run
+		intervalFast = new FinalInterval( new long[] { dimensions[ 0 ], dimensions[ 1 ], 5, 1, 1 } );
+
+		intervalShifted = new FinalInterval( new long[] { 1, 3, 2, 3, 1 }, new long[] { 21, 17, 8, 5, 2 } );
+
+		intervalFlat = new FinalInterval( new long[] { 5, 4, 3, 2, 0 }, new long[] { 9, 7, 5, 3, 2 } );
+
+		int numValues = 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+			numValues *= dimensions[ d ];
+
+		intData = new int[ numValues ];
+		final Random random = new Random( 0 );
+		for ( int i = 0; i < numValues; ++i )
+			intData[ i ] = random.nextInt();
+
+		img = new CellImgFactory< IntType >( new int[] { 32, 4, 3, 2, 2 } ).create( dimensions, new IntType() );
+
+		final long[] pos = new long[ dimensions.length ];
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( int i = 0; i < numValues; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			a.setPosition( pos );
+			a.get().set( intData[ i ] );
+		}
+	}
+
+	@Test
+	public void testOptimizable()
+	{
+		assertTrue( Views.interval( img, intervalShifted ).cursor() instanceof CellSubIntervalCursor );
+		assertTrue( Views.interval( img, intervalShifted ).localizingCursor() instanceof CellSubIntervalCursor );
+		assertTrue( Views.interval( img, img ).cursor() instanceof CellSubIntervalCursor );
+	}
+
+	@Test
+	public void testIterationOrder()
+	{
+		assertFalse( Views.interval( img, intervalShifted ).iterationOrder() instanceof FlatIterationOrder );
+		assertTrue( Views.interval( img, intervalFlat ).iterationOrder() instanceof FlatIterationOrder );
+		assertEquals( img.iterationOrder(), Views.interval( img, img ).iterationOrder() );
+		assertFalse( img.iterationOrder().equals( Views.interval( img, intervalShifted ).iterationOrder() ) );
+	}
+
+	@Test
+	public void testIterationFlat()
+	{
+		testCursorIteration( Views.interval( img, intervalFlat ).cursor(), intervalFlat );
+
+		// same order as a flat cursor
+		final IterableInterval< IntType > view = Views.interval( img, intervalFlat );
+		final Cursor< IntType > c = view.cursor();
+		final Cursor< IntType > flat = Views.flatIterable( Views.interval( img, intervalFlat ) ).cursor();
+		while ( flat.hasNext() )
+			assertEquals( flat.next().get(), c.next().get() );
+		assertFalse( c.hasNext() );
+	}
+
+	@Test
+	public void testJumpFwdAcrossCells()
+	{
+		testJumpFwdAcrossCells( img );
+
+		// cells that split dimension 0
+		final CellImg< IntType, ? > small = new CellImgFactory< IntType >( new int[] { 5, 4, 3, 2, 2 } ).create( dimensions, new IntType() );
+		final RandomAccess< IntType > a = small.randomAccess();
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			a.get().set( c.get() );
+		}
+		testCursorIteration( Views.interval( small, intervalShifted ).cursor(), intervalShifted );
+		testJumpFwdAcrossCells( small );
+	}
+
+	private void testJumpFwdAcrossCells( final CellImg< IntType, ? > img )
+	{
+		final Cursor< IntType > c1 = Views.interval( img, intervalShifted ).cursor();
+		final Cursor< IntType > c2 = Views.interval( img, intervalShifted ).cursor();
+		final long[] p1 = new long[ dimensions.length ];
+		final long[] p2 = new long[ dimensions.length ];
+		for ( final int steps : new int[] { 1, 4, 7, 100, 1, 333 } )
+		{
+			for ( int i = 0; i < steps; ++i )
+				c1.fwd();
+			c2.jumpFwd( steps );
+			c1.localize( p1 );
+			c2.localize( p2 );
+			assertEquals( c1.get().get(), c2.get().get() );
+			for ( int d = 0; d < p1.length; ++d )
+				assertEquals( p1[ d ], p2[ d ] );
+		}
+
+		final Cursor< IntType > copy = c2.copyCursor();
+		while ( c2.hasNext() )
+			assertEquals( c2.next().get(), copy.next().get() );
+		assertFalse( copy.hasNext() );
+	}
+}
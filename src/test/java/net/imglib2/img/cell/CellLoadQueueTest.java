@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.imglib2.FinalRealInterval;
+import net.imglib2.img.cell.CellLoadQueue.Request;
+
+public class CellLoadQueueTest
+{
+	// 10 x 10 cells of size 10 x 10
+	private final CellGrid grid = new CellGrid( new long[] { 100, 100 }, new int[] { 10, 10 } );
+
+	private static long[] toArray( final ArrayList< Long > list )
+	{
+		final long[] array = new long[ list.size() ];
+		for ( int i = 0; i < array.length; ++i )
+			array[ i ] = list.get( i );
+		return array;
+	}
+
+	/**
+	 * Occupy the single worker thread of {@code queue} until the returned
+	 * latch is released.
+	 */
+	private static CountDownLatch block( final CellLoadQueue queue, final CellGrid grid ) throws InterruptedException
+	{
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		queue.submit( grid, 0, 0, () -> {
+			started.countDown();
+			try
+			{
+				release.await();
+			}
+			catch ( final InterruptedException e )
+			{}
+		}, null );
+		assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+		return release;
+	}
+
+	@Test
+	public void testPriorities() throws InterruptedException
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 1 );
+		final CountDownLatch release = block( queue, grid );
+
+		final ArrayList< Long > order = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch( 4 );
+		final long[] indices = { 0, 55, 99, 45 };
+		for ( final long index : indices )
+			queue.submit( grid, index, 0, () -> {
+				synchronized ( order )
+				{
+					order.add( index );
+				}
+				done.countDown();
+			}, null );
+
+		// center of cell 55
+		queue.setViewCenter( 55, 55 );
+		release.countDown();
+		assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+		assertArrayEquals( new long[] { 55, 45, 99, 0 }, toArray( order ) );
+		queue.shutdown();
+	}
+
+	@Test
+	public void testCoarserLevelsFirst() throws InterruptedException
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 1 );
+		queue.setViewCenter( 5, 5 );
+		final CountDownLatch release = block( queue, grid );
+
+		final ArrayList< Integer > order = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch( 3 );
+		final CellGrid[] grids = {
+				grid,
+				new CellGrid( new long[] { 50, 50 }, new int[] { 10, 10 } ),
+				new CellGrid( new long[] { 25, 25 }, new int[] { 10, 10 } ) };
+		for ( final int level : new int[] { 0, 2, 1 } )
+			queue.submit( grids[ level ], 0, level, () -> {
+				synchronized ( order )
+				{
+					order.add( level );
+				}
+				done.countDown();
+			}, null );
+
+		release.countDown();
+		assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+		assertEquals( 2, order.get( 0 ).intValue() );
+		assertEquals( 1, order.get( 1 ).intValue() );
+		assertEquals( 0, order.get( 2 ).intValue() );
+		queue.shutdown();
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 0 );
+		final ArrayList< Long > cancelled = new ArrayList<>();
+		final ArrayList< Request > requests = new ArrayList<>();
+		for ( long index = 0; index < 100; ++index )
+		{
+			final long i = index;
+			requests.add( queue.submit( grid, index, 0, () -> {}, () -> cancelled.add( i ) ) );
+		}
+
+		assertTrue( requests.get( 3 ).cancel() );
+		assertFalse( requests.get( 3 ).cancel() );
+		assertArrayEquals( new long[] { 3 }, toArray( cancelled ) );
+
+		// keep cells 0, 1, 10, 11
+		cancelled.clear();
+		final int n = queue.cancelOutside( new FinalRealInterval( new double[] { 0, 0 }, new double[] { 15, 15 } ) );
+		assertEquals( 95, n );
+		assertEquals( 95, cancelled.size() );
+		assertEquals( 4, queue.size() );
+
+		assertEquals( 4, queue.cancelAll() );
+		assertEquals( 0, queue.size() );
+	}
+}
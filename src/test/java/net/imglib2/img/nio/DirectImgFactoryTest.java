@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class DirectImgFactoryTest
+{
+	private final long[] dimensions = { 23, 17, 5 };
+
+	private static void fillAndCheck( final Img< FloatType > img )
+	{
+		final Random random = new Random( 42 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+
+		final Img< FloatType > copy = img.copy();
+		final Cursor< FloatType > c1 = img.cursor();
+		final Cursor< FloatType > c2 = copy.cursor();
+		random.setSeed( 42 );
+		while ( c1.hasNext() )
+		{
+			final float expected = random.nextFloat();
+			assertEquals( expected, c1.next().get(), 0 );
+			assertEquals( expected, c2.next().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		final ArrayImg< FloatType, ? > img = new DirectArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Object access = img.update( null );
+		assertTrue( access instanceof FloatBufferAccess );
+		assertTrue( ( ( BufferAccess ) access ).getBuffer().isDirect() );
+		fillAndCheck( img );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		final CellImg< FloatType, ? > img = new DirectCellImgFactory< FloatType >( 8 ).create( dimensions, new FloatType() );
+		fillAndCheck( img );
+
+		// copies stay off-heap
+		final CellImg< FloatType, ? > copy = ( CellImg< FloatType, ? > ) img.copy();
+		assertTrue( copy.getCells().firstElement().getData() instanceof FloatBufferAccess );
+	}
+
+	@Test
+	public void testOtherTypes()
+	{
+		final NativeImg< BitType, ? > bits = new DirectArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		final Cursor< BitType > c = bits.localizingCursor();
+		while ( c.hasNext() )
+			c.next().set( c.getIntPosition( 0 ) % 3 == 0 );
+		c.reset();
+		while ( c.hasNext() )
+			assertEquals( c.next().get(), c.getIntPosition( 0 ) % 3 == 0 );
+
+		final NativeImg< ARGBType, ? > argb = new DirectCellImgFactory< ARGBType >( 4 ).create( dimensions, new ARGBType() );
+		for ( final ARGBType t : argb )
+			t.set( 0xff00ff00 );
+		for ( final ARGBType t : argb )
+			assertEquals( 0xff00ff00, t.get() );
+	}
+
+	@Test
+	public void testRelease()
+	{
+		final ArrayImg< FloatType, ? > img = new DirectArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		assertEquals( DirectBuffers.isReleaseSupported(), DirectBuffers.release( img ) );
+
+		final CellImg< FloatType, ? > cellImg = new DirectCellImgFactory< FloatType >( 8 ).create( dimensions, new FloatType() );
+		assertEquals( DirectBuffers.isReleaseSupported(), DirectBuffers.release( cellImg ) );
+	}
+}
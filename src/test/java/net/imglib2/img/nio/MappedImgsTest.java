@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+
+public class MappedImgsTest
+{
+	private final long[] dimensions = { 13, 7, 5 };
+
+	private final long headerBytes = 16;
+
+	private Path file;
+
+	@Before
+	public void writeFile() throws IOException
+	{
+		final int numPixels = ( int ) ( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+		final ByteBuffer bytes = ByteBuffer.allocate( ( int ) headerBytes + 2 * numPixels ).order( ByteOrder.BIG_ENDIAN );
+		bytes.position( ( int ) headerBytes );
+		for ( int i = 0; i < numPixels; ++i )
+			bytes.putShort( ( short ) ( 40000 + i ) );
+		file = Files.createTempFile( "mapped", ".raw" );
+		Files.write( file, bytes.array() );
+	}
+
+	@After
+	public void deleteFile() throws IOException
+	{
+		Files.deleteIfExists( file );
+	}
+
+	@Test
+	public void testArrayImg() throws IOException
+	{
+		final ArrayImg< UnsignedShortType, ? > img = MappedImgs.arrayImg( file, headerBytes, ByteOrder.BIG_ENDIAN, MapMode.READ_ONLY, new UnsignedShortType(), dimensions );
+		int i = 0;
+		for ( final UnsignedShortType t : img )
+			assertEquals( 40000 + i++, t.get() );
+	}
+
+	@Test
+	public void testCellImg() throws IOException
+	{
+		// 2 planes of 13 x 7 pixels per cell
+		final CellImg< UnsignedShortType, ? > img = MappedImgs.cellImg( file, headerBytes, ByteOrder.BIG_ENDIAN, MapMode.READ_ONLY, new UnsignedShortType(), dimensions, 13 * 7 * 2 * 2 + 1 );
+		assertEquals( 3, img.getCellGrid().gridDimension( 2 ) );
+		assertEquals( 1, img.getCellGrid().gridDimension( 1 ) );
+
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		final long[] pos = new long[ 3 ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			assertEquals( 40000 + IntervalIndexer.positionToIndex( pos, dimensions ), c.get().get() );
+		}
+	}
+
+	@Test
+	public void testSmallCells() throws IOException
+	{
+		// cells of 5 pixels along dimension 0
+		final CellImg< UnsignedShortType, ? > img = MappedImgs.cellImg( file, headerBytes, ByteOrder.BIG_ENDIAN, MapMode.READ_ONLY, new UnsignedShortType(), dimensions, 10 );
+		assertEquals( 3, img.getCellGrid().gridDimension( 0 ) );
+
+		final RandomAccess< UnsignedShortType > a = img.randomAccess();
+		final long[] pos = { 12, 6, 4 };
+		a.setPosition( pos );
+		assertEquals( 40000 + IntervalIndexer.positionToIndex( pos, dimensions ), a.get().get() );
+	}
+
+	@Test
+	public void testWrite() throws IOException
+	{
+		final ArrayImg< FloatType, ? > img = MappedImgs.arrayImg( file, 0, ByteOrder.LITTLE_ENDIAN, MapMode.READ_WRITE, new FloatType(), 4 );
+		final RandomAccess< FloatType > a = img.randomAccess();
+		a.setPosition( 2, 0 );
+		a.get().set( 1.5f );
+
+		final ByteBuffer bytes = ByteBuffer.wrap( Files.readAllBytes( file ) ).order( ByteOrder.LITTLE_ENDIAN );
+		assertEquals( 1.5f, bytes.getFloat( 8 ), 0 );
+	}
+
+	@Test
+	public void testTooLargeForArrayImg() throws IOException
+	{
+		try
+		{
+			MappedImgs.arrayImg( file, 0, ByteOrder.BIG_ENDIAN, MapMode.READ_ONLY, new FloatType(), 1l << 20, 1l << 20 );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			assertTrue( e.getMessage().contains( "CellImg" ) );
+			return;
+		}
+		throw new AssertionError( "expected IllegalArgumentException" );
+	}
+}
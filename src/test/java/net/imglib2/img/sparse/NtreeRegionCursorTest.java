@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+
+public class NtreeRegionCursorTest
+{
+	private final long[] dimensions = new long[] { 100, 37, 20 };
+
+	private NtreeImg< IntType, ? > createImg()
+	{
+		final NtreeImg< IntType, ? > img = new NtreeImgFactory< IntType >().create( dimensions, new IntType() );
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( int z = 4; z < 12; ++z )
+			for ( int y = 8; y < 32; ++y )
+				for ( int x = 64; x < 100; ++x )
+				{
+					a.setPosition( new long[] { x, y, z } );
+					a.get().set( y < 17 ? 2 : 5 );
+				}
+		a.setPosition( new long[] { 1, 2, 3 } );
+		a.get().set( 7 );
+		return img;
+	}
+
+	@Test
+	public void testRegionsCoverImage()
+	{
+		final NtreeImg< IntType, ? > img = createImg();
+		final NtreeRegionCursor< IntType > c = img.regionCursor();
+
+		final int[] visits = new int[ ( int ) Intervals.numElements( img ) ];
+		long numPixels = 0;
+		long numRegions = 0;
+		final RandomAccess< IntType > a = img.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			++numRegions;
+			numPixels += c.size();
+			assertEquals( c.size(), Intervals.numElements( c ) );
+			for ( long z = c.min( 2 ); z <= c.max( 2 ); ++z )
+				for ( long y = c.min( 1 ); y <= c.max( 1 ); ++y )
+					for ( long x = c.min( 0 ); x <= c.max( 0 ); ++x )
+					{
+						a.setPosition( new long[] { x, y, z } );
+						assertEquals( a.get().get(), c.get().get() );
+						++visits[ ( int ) ( x + dimensions[ 0 ] * ( y + dimensions[ 1 ] * z ) ) ];
+					}
+		}
+		assertEquals( Intervals.numElements( img ), numPixels );
+		for ( final int v : visits )
+			assertEquals( 1, v );
+		assertEquals( numRegions, numRegions( img.regionCursor().copy() ) );
+
+		c.reset();
+		assertEquals( numRegions, numRegions( c ) );
+		assertFalse( c.hasNext() );
+	}
+
+	private static long numRegions( final NtreeRegionCursor< ? > c )
+	{
+		long n = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			++n;
+		}
+		return n;
+	}
+
+	@Test
+	public void testSum()
+	{
+		final NtreeImg< IntType, ? > img = createImg();
+
+		long expected = 0;
+		final Cursor< IntType > pixels = img.cursor();
+		while ( pixels.hasNext() )
+			expected += pixels.next().get();
+
+		long sum = 0;
+		long numRegions = 0;
+		final NtreeRegionCursor< IntType > c = img.regionCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			sum += c.get().get() * c.size();
+			++numRegions;
+		}
+		assertEquals( expected, sum );
+
+		// far fewer regions than pixels
+		assertTrue( numRegions * 50 < Intervals.numElements( img ) );
+	}
+}
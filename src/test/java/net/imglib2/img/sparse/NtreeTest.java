@@ -34,11 +34,26 @@
 
 package net.imglib2.img.sparse;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
 /**
  * @author Tobias Pietzsch
  * 
@@ -94,4 +109,154 @@ public class NtreeTest
 
 		assertFalse( t.root.hasChildren() );
 	}
+
+	@Test
+	public void test_concurrentWrites() throws InterruptedException, ExecutionException
+	{
+		final long[] dimensions = new long[] { 64, 64, 64 };
+		final Ntree< Integer > t = new Ntree< Integer >( dimensions, 0 );
+		final int numThreads = 4;
+
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+
+		// each thread paints its own set of planes, while reading all others
+		final ArrayList< Future< ? > > futures = new ArrayList<>();
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final int offset = i;
+			futures.add( service.submit( () -> {
+				final long[] pos = new long[ 3 ];
+				final long[] other = new long[ 3 ];
+				for ( pos[ 2 ] = offset; pos[ 2 ] < 64; pos[ 2 ] += numThreads )
+					for ( pos[ 1 ] = 0; pos[ 1 ] < 64; ++pos[ 1 ] )
+						for ( pos[ 0 ] = 0; pos[ 0 ] < 64; ++pos[ 0 ] )
+						{
+							t.createNodeWithValue( pos, ( int ) ( pos[ 0 ] % 3 ) + 1 );
+							other[ 0 ] = pos[ 0 ];
+							other[ 1 ] = pos[ 1 ];
+							other[ 2 ] = 63 - pos[ 2 ];
+							final int v = t.getNode( other ).getValue();
+							assertTrue( v == 0 || v == ( int ) ( pos[ 0 ] % 3 ) + 1 );
+						}
+			} ) );
+		}
+		for ( final Future< ? > future : futures )
+			future.get();
+
+		final long[] pos = new long[ 3 ];
+		for ( pos[ 2 ] = 0; pos[ 2 ] < 64; ++pos[ 2 ] )
+			for ( pos[ 1 ] = 0; pos[ 1 ] < 64; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 0; pos[ 0 ] < 64; ++pos[ 0 ] )
+					assertEquals( ( int ) ( pos[ 0 ] % 3 ) + 1, t.getNode( pos ).getValue().intValue() );
+
+		// painting everything uniformly in parallel merges all nodes again
+		futures.clear();
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final int offset = i;
+			futures.add( service.submit( () -> {
+				final long[] p = new long[ 3 ];
+				for ( p[ 2 ] = offset; p[ 2 ] < 64; p[ 2 ] += numThreads )
+					for ( p[ 1 ] = 0; p[ 1 ] < 64; ++p[ 1 ] )
+						for ( p[ 0 ] = 0; p[ 0 ] < 64; ++p[ 0 ] )
+							t.createNodeWithValue( p, 7 );
+			} ) );
+		}
+		for ( final Future< ? > future : futures )
+			future.get();
+
+		service.shutdown();
+
+		assertFalse( t.root.hasChildren() );
+		assertEquals( 7, t.root.getValue().intValue() );
+	}
+
+	@Test
+	public void test_compact()
+	{
+		final int v = 10;
+		final Ntree< Integer > t = new Ntree< Integer >( new long[] { 256, 257, 100 }, v );
+		final long[] pos = new long[] { 27, 38, 99 };
+		t.createNode( pos );
+		assertTrue( t.root.hasChildren() );
+
+		// 9 levels below the root, 8 children each
+		assertEquals( 9 * 8, t.compact() );
+		assertFalse( t.root.hasChildren() );
+		assertEquals( v, t.root.getValue().intValue() );
+
+		t.createNodeWithValue( pos, v + 1 );
+		final Ntree.NtreeNode< Integer > n = t.createNode( new long[] { 200, 200, 0 } );
+		// the paths diverge below the first child of the root
+		assertEquals( 7 * 8, t.compact() );
+		assertEquals( v + 1, t.getNode( pos ).getValue().intValue() );
+		assertEquals( v, t.getNode( new long[] { 200, 200, 0 } ).getValue().intValue() );
+		assertFalse( t.getNode( new long[] { 200, 200, 0 } ) == n );
+	}
+
+	@Test
+	public void test_build()
+	{
+		final long[] dimensions = new long[] { 37, 20, 9 };
+		final Ntree< Integer > t = new Ntree< Integer >( dimensions, 0 );
+		final Ntree< Integer > expected = new Ntree< Integer >( dimensions, 0 );
+
+		// a box of 1 in a background of 0
+		t.build( p -> p[ 0 ] >= 8 && p[ 0 ] < 24 && p[ 1 ] < 16 ? 1 : 0 );
+
+		final long[] pos = new long[ 3 ];
+		for ( pos[ 2 ] = 0; pos[ 2 ] < dimensions[ 2 ]; ++pos[ 2 ] )
+			for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+				{
+					final int value = pos[ 0 ] >= 8 && pos[ 0 ] < 24 && pos[ 1 ] < 16 ? 1 : 0;
+					assertEquals( value, t.getNode( pos ).getValue().intValue() );
+					expected.createNodeWithValue( pos, value );
+				}
+
+		// the box is made of aligned 8x8x8 nodes, and the tree is already as
+		// compact as possible
+		assertEquals( 0, t.compact() );
+		assertEquals( 1, t.getNode( new long[] { 16, 0, 0 } ).getValue().intValue() );
+		assertTrue( t.getNode( new long[] { 16, 0, 0 } ) == t.getNode( new long[] { 23, 7, 7 } ) );
+
+		// writing pixel by pixel merges all uniform subtrees, but building
+		// also merges across the parts of nodes that lie outside the image
+		assertEquals( 0, expected.compact() );
+		assertEquals( 33, numNodes( t.root ) );
+		assertTrue( numNodes( t.root ) < numNodes( expected.root ) );
+	}
+
+	private static long numNodes( final Ntree.NtreeNode< Integer > node )
+	{
+		long n = 1;
+		if ( node.hasChildren() )
+			for ( final Ntree.NtreeNode< Integer > child : node.getChildren() )
+				n += numNodes( child );
+		return n;
+	}
+
+	@Test
+	public void test_createFromSource()
+	{
+		final long[] dimensions = new long[] { 30, 20 };
+		final ArrayImg< IntType, IntArray > source = ArrayImgs.ints( dimensions );
+		final Cursor< IntType > c = source.localizingCursor();
+		while ( c.hasNext() )
+			c.next().set( c.getIntPosition( 0 ) < 16 ? 3 : c.getIntPosition( 1 ) );
+
+		final NtreeImg< IntType, ? > img = new NtreeImgFactory< IntType >().create( Views.translate( source, 5, -2 ) );
+		assertEquals( 2, img.numDimensions() );
+		assertEquals( 30, img.dimension( 0 ) );
+		assertEquals( 0, img.compact() );
+
+		final RandomAccess< IntType > a = img.randomAccess();
+		c.reset();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get() );
+		}
+	}
 }
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Spliterator;
+
+import org.junit.Test;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+public class CursorSpliteratorTest
+{
+	private final long[] dimensions = { 53, 37, 11 };
+
+	private static void checkParallelStream( final Img< IntType > img )
+	{
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		img.parallelStream().forEach( t -> t.inc() );
+		assertEquals( img.size(), img.stream().count() );
+		assertEquals( img.size(), img.parallelStream().count() );
+
+		i = 0;
+		for ( final IntType t : img )
+			assertEquals( ++i, t.get() );
+	}
+
+	@Test
+	public void testParallelStream()
+	{
+		checkParallelStream( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		checkParallelStream( new PlanarImgFactory< IntType >().create( dimensions, new IntType() ) );
+		checkParallelStream( new CellImgFactory< IntType >( 10 ).create( dimensions, new IntType() ) );
+	}
+
+	@Test
+	public void testSplitRanges()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 10 }, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		final Spliterator< IntType > suffix = img.spliterator();
+		final Spliterator< IntType > prefix = suffix.trySplit();
+		assertEquals( 5, prefix.estimateSize() );
+		assertEquals( 5, suffix.estimateSize() );
+		prefix.tryAdvance( t -> assertEquals( 0, t.get() ) );
+		suffix.tryAdvance( t -> assertEquals( 5, t.get() ) );
+		assertEquals( 4, prefix.estimateSize() );
+	}
+
+	@Test
+	public void testSplitAtCellBoundaries()
+	{
+		// 3 cells of 4, 4, and 2 pixels
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 4 ).create( new long[] { 10 }, new IntType() );
+		final Spliterator< IntType > s = img.spliterator();
+		final Spliterator< IntType > prefix = s.trySplit();
+		assertNotNull( prefix );
+		assertEquals( 4, prefix.estimateSize() );
+		assertEquals( 6, s.estimateSize() );
+		assertNull( prefix.trySplit() );
+		assertEquals( 4, s.trySplit().estimateSize() );
+		assertEquals( 2, s.estimateSize() );
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.DynamicKDTree.Entry;
+import net.imglib2.DynamicKDTree.Node;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+
+public class DynamicKDTreeTest
+{
+	private static RealPoint randomPoint( final Random rnd )
+	{
+		return new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() );
+	}
+
+	private static double squDistance( final Entry< ? > e, final RealPoint p )
+	{
+		double sum = 0;
+		for ( int d = 0; d < 3; ++d )
+		{
+			final double diff = e.getDoublePosition( d ) - p.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static int depth( final Node< ? > node )
+	{
+		return node == null ? 0 : 1 + Math.max( depth( node.getLeft() ), depth( node.getRight() ) );
+	}
+
+	private static void checkInvariant( final Node< ? > node, final double[] min, final double[] max )
+	{
+		if ( node == null )
+			return;
+		final int d = node.getSplitDimension();
+		if ( !node.isRemoved() )
+			for ( int i = 0; i < 3; ++i )
+			{
+				assertTrue( node.getEntry().getDoublePosition( i ) >= min[ i ] );
+				assertTrue( node.getEntry().getDoublePosition( i ) <= max[ i ] );
+			}
+		final double[] leftMax = max.clone();
+		leftMax[ d ] = Math.min( max[ d ], node.getSplitCoordinate() );
+		checkInvariant( node.getLeft(), min, leftMax );
+		final double[] rightMin = min.clone();
+		rightMin[ d ] = Math.max( min[ d ], node.getSplitCoordinate() );
+		checkInvariant( node.getRight(), rightMin, max );
+	}
+
+	@Test
+	public void testInsertRemoveMove()
+	{
+		final Random rnd = new Random( 42 );
+		final DynamicKDTree< Integer > tree = new DynamicKDTree< Integer >( 3 );
+		final ArrayList< Entry< Integer > > entries = new ArrayList< Entry< Integer > >();
+		final NearestNeighborSearchOnDynamicKDTree< Integer > nn = new NearestNeighborSearchOnDynamicKDTree< Integer >( tree );
+		final RadiusNeighborSearchOnDynamicKDTree< Integer > radius = new RadiusNeighborSearchOnDynamicKDTree< Integer >( tree );
+
+		nn.search( randomPoint( rnd ) );
+		assertNull( nn.getSampler() );
+
+		for ( int step = 0; step < 5000; ++step )
+		{
+			final int op = rnd.nextInt( 4 );
+			if ( op < 2 || entries.isEmpty() )
+				entries.add( tree.insert( randomPoint( rnd ), step ) );
+			else if ( op == 2 )
+			{
+				final Entry< Integer > e = entries.remove( rnd.nextInt( entries.size() ) );
+				assertTrue( tree.remove( e ) );
+				assertFalse( tree.remove( e ) );
+			}
+			else
+				tree.move( entries.get( rnd.nextInt( entries.size() ) ), randomPoint( rnd ) );
+			assertEquals( entries.size(), tree.size() );
+
+			if ( step % 50 == 0 )
+			{
+				final double[] min = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+				final double[] max = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+				checkInvariant( tree.getRoot(), min, max );
+
+				final RealPoint q = randomPoint( rnd );
+				final double[] distances = new double[ entries.size() ];
+				Entry< Integer > nearest = null;
+				for ( int i = 0; i < distances.length; ++i )
+				{
+					distances[ i ] = squDistance( entries.get( i ), q );
+					if ( nearest == null || distances[ i ] < squDistance( nearest, q ) )
+						nearest = entries.get( i );
+				}
+				Arrays.sort( distances );
+
+				nn.search( q );
+				assertSame( nearest, nn.getSampler() );
+				assertEquals( distances[ 0 ], nn.getSquareDistance(), 0 );
+
+				radius.search( q, 0.2, true );
+				int count = 0;
+				while ( count < distances.length && distances[ count ] <= 0.04 )
+					++count;
+				assertEquals( count, radius.numNeighbors() );
+				for ( int i = 0; i < count; ++i )
+				{
+					assertEquals( distances[ i ], radius.getSquareDistance( i ), 0 );
+					assertTrue( radius.getEntry( i ).isInTree() );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRebalancing()
+	{
+		// inserting sorted points would make an unbalanced tree degenerate
+		final DynamicKDTree< Integer > tree = new DynamicKDTree< Integer >( 1 );
+		for ( int i = 0; i < 10000; ++i )
+			tree.insert( new RealPoint( ( double ) i ), i );
+		assertEquals( 10000, tree.size() );
+		assertTrue( depth( tree.getRoot() ) <= Math.log( 10000 ) / Math.log( 1 / 0.7 ) + 2 );
+
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		final ArrayList< RealPoint > positions = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			values.add( i );
+			positions.add( new RealPoint( -1.0 - i ) );
+		}
+		final java.util.List< Entry< Integer > > entries = tree.insertAll( values, positions );
+		assertEquals( 11000, tree.size() );
+		assertEquals( 999, entries.get( 999 ).get().intValue() );
+		assertTrue( depth( tree.getRoot() ) <= 14 );
+	}
+}
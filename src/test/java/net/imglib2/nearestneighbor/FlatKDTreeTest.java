@@ -0,0 +1,261 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.BatchKNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+
+public class FlatKDTreeTest
+{
+	private static ArrayList< RealPoint > randomPoints( final int numPoints, final int numDimensions, final Random rnd )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextDouble() * 100;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static double[] sortedSquDistances( final ArrayList< RealPoint > points, final RealPoint t )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+			distances[ i ] = squDistance( points.get( i ), t );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testStructure()
+	{
+		final ArrayList< RealPoint > points = randomPoints( 1000, 3, new Random( 1 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		checkSubtree( tree, 0, points.size() - 1, 0 );
+
+		// every value appears exactly once, with its own coordinates
+		final boolean[] seen = new boolean[ points.size() ];
+		final RealCursor< RealPoint > c = tree.cursor();
+		while ( c.hasNext() )
+		{
+			final RealPoint p = c.next();
+			seen[ points.indexOf( p ) ] = true;
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( p.getDoublePosition( d ), c.getDoublePosition( d ), 0 );
+		}
+		for ( final boolean s : seen )
+			assertEquals( true, s );
+	}
+
+	private static void checkSubtree( final FlatKDTree< ? > tree, final int i, final int j, final int d )
+	{
+		if ( j < i )
+			return;
+		final int k = i + ( j - i ) / 2;
+		final double split = tree.getDoublePosition( k, d );
+		for ( int l = i; l < k; ++l )
+			assertEquals( true, tree.getDoublePosition( l, d ) <= split );
+		for ( int l = k + 1; l <= j; ++l )
+			assertEquals( true, tree.getDoublePosition( l, d ) >= split );
+		final int dChild = ( d + 1 ) % tree.numDimensions();
+		checkSubtree( tree, i, k - 1, dChild );
+		checkSubtree( tree, k + 1, j, dChild );
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final ArrayList< RealPoint > points = randomPoints( 100000, 3, new Random( 5 ) );
+		final FlatKDTree< RealPoint > serial = new FlatKDTree< RealPoint >( points, points );
+		final FlatKDTree< RealPoint > parallel = new FlatKDTree< RealPoint >( points, points, ForkJoinPool.commonPool() );
+		assertArrayEquals( serial.getPositions(), parallel.getPositions(), 0 );
+		for ( int k = 0; k < points.size(); ++k )
+			assertEquals( serial.getIndex( k ), parallel.getIndex( k ) );
+	}
+
+	@Test
+	public void testNearestNeighbor()
+	{
+		final Random rnd = new Random( 2 );
+		final ArrayList< RealPoint > points = randomPoints( 2000, 3, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > flat = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final NearestNeighborSearchOnKDTree< RealPoint > kd = new NearestNeighborSearchOnKDTree< RealPoint >( new KDTree< RealPoint >( new ArrayList< RealPoint >( points ), new ArrayList< RealPoint >( points ) ) );
+		for ( final RealPoint t : randomPoints( 500, 3, rnd ) )
+		{
+			flat.search( t );
+			kd.search( t );
+			assertEquals( kd.getSquareDistance(), flat.getSquareDistance(), 0 );
+			assertEquals( squDistance( flat.getSampler().get(), t ), flat.getSquareDistance(), 0 );
+			assertSame( points.get( tree.getIndex( flat.getNode() ) ), flat.getSampler().get() );
+		}
+	}
+
+	@Test
+	public void testKNearestNeighbor()
+	{
+		final Random rnd = new Random( 3 );
+		final ArrayList< RealPoint > points = randomPoints( 2000, 4, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final int k = 7;
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		for ( final RealPoint t : randomPoints( 200, 4, rnd ) )
+		{
+			search.search( t );
+			final double[] expected = Arrays.copyOf( sortedSquDistances( points, t ), k );
+			final double[] actual = new double[ k ];
+			for ( int i = 0; i < k; ++i )
+			{
+				actual[ i ] = search.getSquareDistance( i );
+				assertEquals( actual[ i ], squDistance( search.getSampler( i ).get(), t ), 0 );
+			}
+			assertArrayEquals( expected, actual, 0 );
+		}
+	}
+
+	@Test
+	public void testBatchSearch()
+	{
+		final Random rnd = new Random( 6 );
+		final ArrayList< RealPoint > points = randomPoints( 5000, 3, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final int k = 3;
+		final RealPointSampleList< IntType > references = new RealPointSampleList< IntType >( 3 );
+		for ( final RealPoint t : randomPoints( 3000, 3, rnd ) )
+			references.add( t, new IntType() );
+
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > single = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		final int[] expectedIndices = new int[ 3000 * k ];
+		final double[] expectedDistances = new double[ 3000 * k ];
+		final RealCursor< IntType > c = references.localizingCursor();
+		for ( int r = 0; c.hasNext(); ++r )
+		{
+			c.fwd();
+			single.search( c );
+			for ( int i = 0; i < k; ++i )
+			{
+				expectedIndices[ r * k + i ] = tree.getIndex( single.getNode( i ) );
+				expectedDistances[ r * k + i ] = single.getSquareDistance( i );
+			}
+		}
+
+		for ( final boolean sort : new boolean[] { false, true } )
+			for ( final ForkJoinPool pool : new ForkJoinPool[] { null, ForkJoinPool.commonPool() } )
+			{
+				final int[] indices = new int[ 3000 * k ];
+				final double[] distances = new double[ 3000 * k ];
+				new BatchKNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k, sort ).search( references, indices, distances, pool );
+				assertArrayEquals( expectedIndices, indices );
+				assertArrayEquals( expectedDistances, distances, 0 );
+			}
+	}
+
+	@Test
+	public void testRadiusNeighbor()
+	{
+		final Random rnd = new Random( 4 );
+		final ArrayList< RealPoint > points = randomPoints( 2000, 2, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final double radius = 10;
+		for ( final RealPoint t : randomPoints( 200, 2, rnd ) )
+		{
+			search.search( t, radius, true );
+			final double[] all = sortedSquDistances( points, t );
+			int count = 0;
+			while ( count < all.length && all[ count ] <= radius * radius )
+				++count;
+			assertEquals( count, search.numNeighbors() );
+			for ( int i = 0; i < count; ++i )
+			{
+				assertEquals( all[ i ], search.getSquareDistance( i ), 0 );
+				assertEquals( all[ i ], squDistance( search.getSampler( i ).get(), t ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testIterableRealInterval()
+	{
+		// a regular grid, i.e., sorted and with many equal coordinates
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( 2 );
+		for ( int y = 0; y < 50; ++y )
+			for ( int x = 0; x < 50; ++x )
+				list.add( new RealPoint( new double[] { x, y } ), new IntType( y * 50 + x ) );
+
+		final FlatKDTree< IntType > tree = new FlatKDTree< IntType >( list );
+		assertEquals( 2500, tree.size() );
+		assertEquals( 49, tree.realMax( 1 ), 0 );
+
+		final NearestNeighborSearchOnFlatKDTree< IntType > search = new NearestNeighborSearchOnFlatKDTree< IntType >( tree );
+		search.search( new RealPoint( new double[] { 12.2, 30.7 } ) );
+		assertEquals( 31 * 50 + 12, search.getSampler().get().get() );
+		assertEquals( 31 * 50 + 12, tree.getIndex( search.getNode() ) );
+	}
+}
@@ -34,15 +34,21 @@
 
 package net.imglib2.nearestneighbor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
 import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.ApproximateKNearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
@@ -436,6 +442,167 @@ public class KDTreeTest
 		assertTrue( testRadiusNeighbor( 3, 1000, 100, -5, 5 ) );
 	}
 
+	@Test
+	public void testKDTreeRadiusNeighborCount()
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final Random rnd = new Random( 9 );
+		for ( int i = 0; i < 2000; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+		final RadiusNeighborSearchOnKDTree< RealPoint > kd = new RadiusNeighborSearchOnKDTree< RealPoint >( new KDTree< RealPoint >( points, points ) );
+
+		final RealPoint t = new RealPoint( 0.5, 0.5 );
+		kd.search( t, 0.1, true );
+		final int numNeighbors = kd.numNeighbors();
+		assertTrue( numNeighbors > 0 );
+		for ( int i = 1; i < numNeighbors; ++i )
+			assertTrue( kd.getSquareDistance( i - 1 ) <= kd.getSquareDistance( i ) );
+
+		assertEquals( numNeighbors, kd.count( t, 0.1 ) );
+
+		final double[] sum = new double[ 1 ];
+		kd.visit( t, 0.1, ( node, squDistance ) -> sum[ 0 ] += squDistance );
+		double expected = 0;
+		for ( int i = 0; i < numNeighbors; ++i )
+			expected += kd.getSquareDistance( i );
+		assertEquals( expected, sum[ 0 ], 1e-10 );
+
+		// counting does not change the results of the last search
+		assertEquals( numNeighbors, kd.numNeighbors() );
+	}
+
+	@SuppressWarnings( "deprecation" )
+	@Test
+	public void testKDTreeRadiusNeighborSearchSubclass()
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final Random rnd = new Random( 9 );
+		for ( int i = 0; i < 2000; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+		final KDTree< RealPoint > tree = new KDTree< RealPoint >( points, points );
+
+		// a subclass that overrides searchNode and reads resultPoints
+		final int[] calls = new int[ 1 ];
+		class Sub extends RadiusNeighborSearchOnKDTree< RealPoint >
+		{
+			Sub( final KDTree< RealPoint > t )
+			{
+				super( t );
+			}
+
+			@Override
+			protected void searchNode( final KDTreeNode< RealPoint > current, final double squRadius )
+			{
+				++calls[ 0 ];
+				super.searchNode( current, squRadius );
+			}
+
+			ValuePair< KDTreeNode< RealPoint >, Double > resultPoint( final int i )
+			{
+				return resultPoints.get( i );
+			}
+		}
+		final Sub sub = new Sub( tree );
+		final RadiusNeighborSearchOnKDTree< RealPoint > kd = new RadiusNeighborSearchOnKDTree< RealPoint >( tree );
+
+		final RealPoint t = new RealPoint( 0.3, 0.6 );
+		kd.search( t, 0.1, true );
+		sub.search( t, 0.1, true );
+		assertEquals( 1, calls[ 0 ] );
+		assertEquals( kd.numNeighbors(), sub.numNeighbors() );
+		for ( int i = 0; i < kd.numNeighbors(); ++i )
+		{
+			assertEquals( kd.getSquareDistance( i ), sub.getSquareDistance( i ), 0 );
+			assertEquals( sub.getSquareDistance( i ), sub.resultPoint( i ).b, 0 );
+			assertTrue( sub.getSampler( i ) == sub.resultPoint( i ).a );
+		}
+	}
+
+	@Test
+	public void testApproximateKNearestNeighborSearch()
+	{
+		final int k = 5;
+		final Random rnd = new Random( 1234 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 5000; ++i )
+		{
+			final double[] p = new double[ 8 ];
+			for ( int d = 0; d < 8; ++d )
+				p[ d ] = rnd.nextDouble();
+			points.add( new RealPoint( p ) );
+		}
+		final ArrayList< RealPoint > references = new ArrayList< RealPoint >( points.subList( 0, 200 ) );
+		for ( final RealPoint r : references )
+			r.move( 0.01, 0 );
+		final KDTree< RealPoint > kdTree = new KDTree< RealPoint >( points, points );
+
+		// without approximation, the search is exact
+		final KNearestNeighborSearchOnKDTree< RealPoint > exact = new KNearestNeighborSearchOnKDTree< RealPoint >( kdTree, k );
+		final ApproximateKNearestNeighborSearchOnKDTree< RealPoint > approximate = new ApproximateKNearestNeighborSearchOnKDTree< RealPoint >( kdTree, k, 0, 0 );
+		for ( final RealPoint r : references )
+		{
+			exact.search( r );
+			approximate.search( r );
+			for ( int i = 0; i < k; ++i )
+				assertEquals( exact.getSquareDistance( i ), approximate.getSquareDistance( i ), 0 );
+		}
+		assertEquals( 1, ApproximateKNearestNeighborSearchOnKDTree.evaluate( kdTree, k, 0, 0, references ).getRecall(), 0 );
+
+		// neighbors are within (1 + epsilon) of the true distance
+		final double epsilon = 1;
+		final ApproximateKNearestNeighborSearchOnKDTree< RealPoint > eps = new ApproximateKNearestNeighborSearchOnKDTree< RealPoint >( kdTree, k, epsilon, 0 );
+		for ( final RealPoint r : references )
+		{
+			exact.search( r );
+			eps.search( r );
+			for ( int i = 0; i < k; ++i )
+				assertTrue( eps.getDistance( i ) <= ( 1 + epsilon ) * exact.getDistance( i ) + 1e-10 );
+		}
+
+		// the node budget is respected and trades recall for speed
+		final ApproximateKNearestNeighborSearchOnKDTree.Evaluation evaluation = ApproximateKNearestNeighborSearchOnKDTree.evaluate( kdTree, k, 0, 100, references );
+		assertTrue( evaluation.getMeanVisitedNodes() <= 100 );
+		assertTrue( evaluation.getSpeedup() > 1 );
+		assertTrue( evaluation.getRecall() > 0 && evaluation.getRecall() < 1 );
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		final Random rnd = new Random( 2346 );
+		for ( int i = 0; i < 100000; ++i )
+		{
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() ) );
+			values.add( i );
+		}
+
+		final KDTree< Integer > serial = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ) );
+		final KDTree< Integer > parallel = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ), ForkJoinPool.commonPool() );
+		assertSameTree( serial.getRoot(), parallel.getRoot() );
+
+		final KDTree< RealPoint > serialPoints = new KDTree< RealPoint >( new ArrayList< RealPoint >( points ), new ArrayList< RealPoint >( points ) );
+		final ArrayList< RealPoint > copy = new ArrayList< RealPoint >( points );
+		final KDTree< RealPoint > parallelPoints = new KDTree< RealPoint >( copy, copy, ForkJoinPool.commonPool() );
+		assertSameTree( serialPoints.getRoot(), parallelPoints.getRoot() );
+	}
+
+	private static < T > void assertSameTree( final KDTreeNode< T > expected, final KDTreeNode< T > actual )
+	{
+		if ( expected == null )
+		{
+			assertNull( actual );
+			return;
+		}
+		assertEquals( expected.getSplitDimension(), actual.getSplitDimension() );
+		for ( int d = 0; d < expected.numDimensions(); ++d )
+			assertEquals( expected.getDoublePosition( d ), actual.getDoublePosition( d ), 0 );
+		assertSame( expected.get(), actual.get() );
+		assertSameTree( expected.left, actual.left );
+		assertSameTree( expected.right, actual.right );
+	}
+
 	public static void main( final String[] args )
 	{
 		for ( int i = 0; i < 5; ++i )
@@ -40,8 +40,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Random;
 
+import net.imglib2.RandomAccess;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.img.basictypeaccess.array.LongArray;
@@ -108,6 +110,55 @@ public class BitTypeTest {
 		}
 	}
 
+	/**
+	 * Tests that threads setting and clearing interleaved bits of the same
+	 * {@code long}s don't lose each other's writes, and that single-writer
+	 * mode gives the same result without contention.
+	 */
+	@Test
+	public void testConcurrentWrites() throws InterruptedException
+	{
+		final ArrayImg< BitType, LongArray > bits = ArrayImgs.bits( 640 );
+		final int numThreads = 4;
+		final ArrayList< Thread > threads = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final int offset = t;
+			threads.add( new Thread( () -> {
+				final RandomAccess< BitType > a = bits.randomAccess();
+				for ( int round = 0; round < 101; ++round )
+					for ( int i = offset; i < 640; i += numThreads )
+					{
+						a.setPosition( i, 0 );
+						a.get().set( ( round + i / numThreads ) % 2 == 0 );
+					}
+			} ) );
+		}
+		for ( final Thread thread : threads )
+			thread.start();
+		for ( final Thread thread : threads )
+			thread.join();
+
+		final RandomAccess< BitType > a = bits.randomAccess();
+		for ( int i = 0; i < 640; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( ( 100 + i / numThreads ) % 2 == 0, a.get().get() );
+		}
+
+		a.get().setConcurrentWrites( false );
+		for ( int i = 0; i < 640; ++i )
+		{
+			a.setPosition( i, 0 );
+			a.get().set( i % 3 == 0 );
+		}
+		for ( int i = 0; i < 640; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( i % 3 == 0, a.get().get() );
+		}
+	}
+
 	/**
 	 * Tests that {@link BitType#getBigInteger()} returns the BigInteger 
 	 * representation of a BitType.
@@ -38,8 +38,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Random;
 
+import net.imglib2.RandomAccess;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
 
@@ -145,4 +147,39 @@ public class Unsigned12BitTypeTest
 		assertEquals( 3526, b.hashCode() );
 	}
 
+	/**
+	 * Test that threads writing interleaved pixels, which share {@code long}s
+	 * and are split across {@code long}s, don't lose each other's writes.
+	 */
+	@Test
+	public void testConcurrentWrites() throws InterruptedException
+	{
+		final ArrayImg< Unsigned12BitType, ? > img = new ArrayImgFactory< Unsigned12BitType >().create( new long[] { 1000 }, new Unsigned12BitType() );
+		final int numThreads = 4;
+		final ArrayList< Thread > threads = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final int offset = t;
+			threads.add( new Thread( () -> {
+				final RandomAccess< Unsigned12BitType > a = img.randomAccess();
+				for ( int round = 0; round < 100; ++round )
+					for ( int i = offset; i < 1000; i += numThreads )
+					{
+						a.setPosition( i, 0 );
+						a.get().set( ( i * 7 + round ) & 0xfff );
+					}
+			} ) );
+		}
+		for ( final Thread thread : threads )
+			thread.start();
+		for ( final Thread thread : threads )
+			thread.join();
+
+		final RandomAccess< Unsigned12BitType > a = img.randomAccess();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( ( i * 7 + 99 ) & 0xfff, a.get().get() );
+		}
+	}
 }
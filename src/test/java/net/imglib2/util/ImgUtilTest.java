@@ -36,13 +36,27 @@ package net.imglib2.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -333,4 +347,95 @@ public class ImgUtilTest
 		}
 	}
 
+	private static Img< UnsignedShortType > createTimeLapse( final ImgFactory< UnsignedShortType > factory )
+	{
+		final long[] dimensions = { 41, 23, 7, 3 };
+		final Img< UnsignedShortType > img = factory.create( dimensions, new UnsignedShortType() );
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		final long[] position = new long[ 4 ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			c.get().set( ( int ) IntervalIndexer.positionToIndex( position, dimensions ) );
+		}
+		return img;
+	}
+
+	private static void assertImgEquals( final Img< UnsignedShortType > expected, final Img< UnsignedShortType > actual )
+	{
+		final Cursor< UnsignedShortType > c = expected.localizingCursor();
+		final RandomAccess< UnsignedShortType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get() );
+		}
+	}
+
+	@Test
+	public void testBulkCopy()
+	{
+		final List< ImgFactory< UnsignedShortType > > factories = new ArrayList<>();
+		factories.add( new ArrayImgFactory< UnsignedShortType >() );
+		factories.add( new PlanarImgFactory< UnsignedShortType >() );
+		factories.add( new CellImgFactory< UnsignedShortType >( 5 ) );
+		factories.add( new CellImgFactory< UnsignedShortType >( 16, 8, 3, 2 ) );
+		factories.add( new ListImgFactory< UnsignedShortType >() );
+		for ( final ImgFactory< UnsignedShortType > sourceFactory : factories )
+		{
+			final Img< UnsignedShortType > source = createTimeLapse( sourceFactory );
+			for ( final ImgFactory< UnsignedShortType > targetFactory : factories )
+			{
+				final Img< UnsignedShortType > target = targetFactory.create( source, new UnsignedShortType() );
+				ImgUtil.copy( source, target );
+				assertImgEquals( source, target );
+			}
+		}
+	}
+
+	@Test
+	public void testBulkCopyFromView()
+	{
+		final Img< UnsignedShortType > source = createTimeLapse( new ArrayImgFactory< UnsignedShortType >() );
+		final Img< UnsignedShortType > target = new CellImgFactory< UnsignedShortType >( 5 ).create( new long[] { 40, 23, 7, 3 }, new UnsignedShortType() );
+		ImgUtil.copy( Views.interval( source, new long[] { 1, 0, 0, 0 }, new long[] { 40, 22, 6, 2 } ), target );
+		final RandomAccess< UnsignedShortType > a = target.randomAccess();
+		a.setPosition( new long[] { 0, 1, 0, 0 } );
+		assertEquals( 42, a.get().get() );
+	}
+
+	@Test
+	public void testBulkFill()
+	{
+		final Img< ComplexFloatType > complex = new CellImgFactory< ComplexFloatType >( 7 ).create( new long[] { 30, 20 }, new ComplexFloatType() );
+		ImgUtil.fill( complex, new ComplexFloatType( 1.5f, -2 ) );
+		for ( final ComplexFloatType t : complex )
+		{
+			assertEquals( 1.5f, t.getRealFloat(), 0 );
+			assertEquals( -2f, t.getImaginaryFloat(), 0 );
+		}
+
+		final Img< BitType > bits = new PlanarImgFactory< BitType >().create( new long[] { 30, 20, 3 }, new BitType() );
+		ImgUtil.fill( bits, new BitType( true ) );
+		for ( final BitType t : bits )
+			assertTrue( t.get() );
+	}
+
+	@Test
+	public void testBulkConvert()
+	{
+		final Img< UnsignedShortType > source = createTimeLapse( new PlanarImgFactory< UnsignedShortType >() );
+		final Img< FloatType > target = new CellImgFactory< FloatType >( 6 ).create( source, new FloatType() );
+		ImgUtil.convert( source, target, ( s, t ) -> t.set( s.get() * 0.5f ) );
+		final Cursor< FloatType > c = target.localizingCursor();
+		final RandomAccess< UnsignedShortType > a = source.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( a.get().get() * 0.5f, c.get().get(), 0 );
+		}
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.outofbounds.OutOfBounds;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+
+public class ExtendedRandomAccessibleIntervalTest
+{
+	private final ArrayImg< IntType, IntArray > img = createImg();
+
+	private static ArrayImg< IntType, IntArray > createImg()
+	{
+		final ArrayImg< IntType, IntArray > img = ArrayImgs.ints( 20, 15 );
+		final Random random = new Random( 1 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 100 ) );
+		return img;
+	}
+
+	/**
+	 * Sum of the 3x3 neighborhoods of all positions in interval.
+	 */
+	private static void boxSum( final RandomAccess< IntType > a, final Interval interval, final long[][] result )
+	{
+		for ( long y = interval.min( 1 ); y <= interval.max( 1 ); ++y )
+			for ( long x = interval.min( 0 ); x <= interval.max( 0 ); ++x )
+			{
+				int sum = 0;
+				for ( int dy = -1; dy <= 1; ++dy )
+					for ( int dx = -1; dx <= 1; ++dx )
+					{
+						a.setPosition( x + dx, 0 );
+						a.setPosition( y + dy, 1 );
+						sum += a.get().get();
+					}
+				result[ ( int ) ( y + 2 ) ][ ( int ) ( x + 2 ) ] += sum;
+			}
+	}
+
+	@Test
+	public void testInteriorAndBorderSlabs()
+	{
+		final ExtendedRandomAccessibleInterval< IntType, ArrayImg< IntType, IntArray > > extended = Views.extendMirrorSingle( img );
+
+		// process the image and two pixels around it
+		final Interval interval = Intervals.expand( img, 2 );
+		final long[][] expected = new long[ 19 ][ 24 ];
+		boxSum( extended.randomAccess(), interval, expected );
+
+		final FinalInterval interior = extended.getInterior( interval, 1 );
+		assertTrue( Intervals.equals( interior, Intervals.expand( img, -1 ) ) );
+
+		final long[][] split = new long[ 19 ][ 24 ];
+		final RandomAccess< IntType > raw = Views.interval( extended, Intervals.expand( interior, 1 ) ).randomAccess();
+		assertFalse( raw instanceof OutOfBounds );
+		boxSum( raw, interior, split );
+		final List< FinalInterval > slabs = extended.getBorderSlabs( interval, 1 );
+		assertEquals( 4, slabs.size() );
+		for ( final FinalInterval slab : slabs )
+			boxSum( extended.randomAccess(), slab, split );
+
+		// every position is processed exactly once
+		for ( int y = 0; y < expected.length; ++y )
+			for ( int x = 0; x < expected[ y ].length; ++x )
+				assertEquals( expected[ y ][ x ], split[ y ][ x ] );
+	}
+
+	@Test
+	public void testNoInterior()
+	{
+		final ExtendedRandomAccessibleInterval< IntType, ArrayImg< IntType, IntArray > > extended = Views.extendBorder( img );
+		final FinalInterval interval = new FinalInterval( new long[] { -5, 3 }, new long[] { 0, 8 } );
+		assertTrue( Intervals.isEmpty( extended.getInterior( interval, 2, 1 ) ) );
+		final List< FinalInterval > slabs = extended.getBorderSlabs( interval, 2, 1 );
+		assertEquals( 1, slabs.size() );
+		assertTrue( Intervals.equals( interval, slabs.get( 0 ) ) );
+	}
+
+	@Test
+	public void testSubtract()
+	{
+		final FinalInterval interval = new FinalInterval( new long[] { 0, 0, 0 }, new long[] { 9, 9, 9 } );
+		final FinalInterval hole = new FinalInterval( new long[] { 3, -5, 2 }, new long[] { 12, 4, 7 } );
+		final List< FinalInterval > slabs = Intervals.subtract( interval, hole );
+
+		// below in dimension 0, above in dimension 1, below and above in
+		// dimension 2
+		assertEquals( 4, slabs.size() );
+
+		final int[] count = new int[ 1000 ];
+		for ( final FinalInterval slab : slabs )
+		{
+			assertFalse( Intervals.isEmpty( slab ) );
+			for ( long z = slab.min( 2 ); z <= slab.max( 2 ); ++z )
+				for ( long y = slab.min( 1 ); y <= slab.max( 1 ); ++y )
+					for ( long x = slab.min( 0 ); x <= slab.max( 0 ); ++x )
+						++count[ ( int ) ( x + 10 * y + 100 * z ) ];
+		}
+		for ( int z = 0; z < 10; ++z )
+			for ( int y = 0; y < 10; ++y )
+				for ( int x = 0; x < 10; ++x )
+				{
+					final boolean inHole = x >= 3 && y <= 4 && z >= 2 && z <= 7;
+					assertEquals( inHole ? 0 : 1, count[ x + 10 * y + 100 * z ] );
+				}
+	}
+}
@@ -35,9 +35,13 @@
 package net.imglib2.view;
 
 import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.transform.integer.MixedTransform;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Assert;
@@ -94,6 +98,130 @@ public class RandomAccessTest
 		testmove( a, pos, dist );
 	}
 
+	@Test
+	public void testPermutationAccess()
+	{
+		final RandomAccess< UnsignedByteType > a = Views.translate( Views.permute( Views.permute( img, 0, 3 ), 1, 4 ), 3, 0, -2, 1, 5 ).randomAccess();
+
+		assertTrue( PermutationRandomAccess.class.isInstance( a ) );
+
+		final long[] pos = new long[] { 28, 30, 5, 5, 12 };
+		final long[] dist = new long[] { 2, 3, 4, 2, 1 };
+
+		testlocalize( a, pos );
+		testfwd( a, pos );
+		testbck( a, pos );
+		testmove( a, pos, 3 );
+		testmove( a, pos, -2 );
+		testmove( a, pos, dist );
+		testget( a, pos, new long[] { 4, 7, 7, 25, 30 } );
+	}
+
+	@Test
+	public void testNonBijectiveMixedAccess()
+	{
+		// two source dimensions follow the same view dimension
+		for ( final int[] mapping : new int[][] { { 0, 0, 2, 3, 4 }, { 1, 1, 2, 3, 4 } } )
+		{
+			final MixedTransform t = new MixedTransform( 5, 5 );
+			t.setComponentMapping( mapping );
+			t.setTranslation( new long[] { 3, 1, 0, 1, 5 } );
+			final RandomAccess< UnsignedByteType > a = new MixedTransformView<>( img, t ).randomAccess();
+			assertTrue( MixedRandomAccess.class.isInstance( a ) );
+
+			// compare against the general MixedRandomAccess on the same
+			// transform
+			final RandomAccess< UnsignedByteType > expected = new MixedRandomAccess<>( img.randomAccess(), t );
+			final Random random = new Random( 1 );
+			final long[] pos = new long[ 5 ];
+			for ( int i = 0; i < 100; ++i )
+			{
+				for ( int d = 0; d < 5; ++d )
+					pos[ d ] = 1 + random.nextInt( 8 );
+				a.setPosition( pos );
+				expected.setPosition( pos );
+				final int d = random.nextInt( 5 );
+				switch ( random.nextInt( 3 ) )
+				{
+				case 0:
+					a.fwd( d );
+					expected.fwd( d );
+					break;
+				case 1:
+					a.bck( d );
+					expected.bck( d );
+					break;
+				default:
+					a.move( -1, d );
+					expected.move( -1, d );
+				}
+				expected.get().set( 42 );
+				Assert.assertEquals( 42, a.get().get() );
+				expected.get().set( 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testInvertAxisAccess()
+	{
+		final RandomAccess< UnsignedByteType > a = Views.translate( Views.invertAxis( img, 1 ), 3, 70, 0, 1, 0 ).randomAccess();
+
+		assertTrue( InvertAxisRandomAccess.class.isInstance( a ) );
+
+		final long[] pos = new long[] { 28, 40, 5, 5, 12 };
+		final long[] dist = new long[] { 2, 3, 4, 2, 1 };
+
+		testlocalize( a, pos );
+		testfwd( a, pos );
+		testbck( a, pos );
+		testmove( a, pos, 3 );
+		testmove( a, pos, -2 );
+		testmove( a, pos, dist );
+		testget( a, pos, new long[] { 25, 30, 5, 4, 12 } );
+
+		// inverting twice is the identity
+		assertTrue( !InvertAxisRandomAccess.class.isInstance( Views.invertAxis( Views.invertAxis( img, 1 ), 1 ).randomAccess() ) );
+	}
+
+	@Test
+	public void testLeadingDimensionsSlicingAccess()
+	{
+		final RandomAccess< UnsignedByteType > a = Views.translate( Views.hyperSlice( Views.hyperSlice( img, 4, 7 ), 3, 2 ), 1, 2, 3 ).randomAccess();
+
+		assertTrue( LeadingDimensionsSlicingRandomAccess.class.isInstance( a ) );
+
+		final long[] pos = new long[] { 28, 30, 5 };
+		final long[] dist = new long[] { 2, 3, 4 };
+
+		testlocalize( a, pos );
+		testfwd( a, pos );
+		testbck( a, pos );
+		testmove( a, pos, 3 );
+		testmove( a, pos, -2 );
+		testmove( a, pos, dist );
+		testget( a, pos, new long[] { 27, 28, 2, 2, 7 } );
+		testget( a.copyRandomAccess(), pos, new long[] { 27, 28, 2, 2, 7 } );
+
+		// slicing an inner dimension needs the general mapping
+		assertTrue( FullSourceMapSlicingRandomAccess.class.isInstance( Views.hyperSlice( img, 2, 2 ).randomAccess() ) );
+	}
+
+	/**
+	 * Check that the view access at pos refers to the pixel at sourcePos of
+	 * {@link #img}.
+	 */
+	private void testget( final RandomAccess< UnsignedByteType > a, final long[] pos, final long[] sourcePos )
+	{
+		final RandomAccess< UnsignedByteType > s = img.randomAccess();
+		s.setPosition( sourcePos );
+		s.get().set( 42 );
+		a.setPosition( pos );
+		Assert.assertEquals( 42, a.get().get() );
+		s.get().set( 0 );
+		Assert.assertEquals( 0, a.get().get() );
+	}
+
 	public < T > void testlocalize( final RandomAccess< T > a, final long[] pos )
 	{
 		final long[] loc = new long[ pos.length ];
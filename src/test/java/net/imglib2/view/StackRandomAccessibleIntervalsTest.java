@@ -34,16 +34,21 @@
 
 package net.imglib2.view;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Before;
@@ -100,4 +105,31 @@ public class StackRandomAccessibleIntervalsTest
 			assertTrue( stackC.next().get() % 2 == 0 );
 		}
 	}
+
+	@Test
+	public void testForEachSlice()
+	{
+		final List< RandomAccessibleInterval< UnsignedByteType > > planes = new ArrayList<>();
+		for ( int z = 0; z < 200; ++z )
+			planes.add( ArrayImgs.unsignedBytes( 7, 5 ) );
+		final StackView< UnsignedByteType > stack = ( StackView< UnsignedByteType > ) Views.stack( planes );
+
+		// every slice is processed exactly once, with its index
+		final AtomicIntegerArray count = new AtomicIntegerArray( planes.size() );
+		stack.forEachSlice( new ForkJoinPool( 4 ), ( slice, z ) -> {
+			count.incrementAndGet( z );
+			assertTrue( slice == planes.get( z ) );
+			for ( final UnsignedByteType t : Views.iterable( slice ) )
+				t.set( z );
+		} );
+		for ( int z = 0; z < planes.size(); ++z )
+			assertEquals( 1, count.get( z ) );
+
+		final RandomAccess< UnsignedByteType > a = stack.randomAccess();
+		for ( int z = 0; z < planes.size(); ++z )
+		{
+			a.setPosition( new long[] { 6, 4, z } );
+			assertEquals( z, a.get().get() );
+		}
+	}
 }
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArraySubsampleCursor;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.CellSubIntervalCursor;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+
+public class SubsampleIntervalViewTest
+{
+	private final long[] dimensions = { 23, 17, 11 };
+
+	private final long[] steps = { 3, 4, 2 };
+
+	private static Img< IntType > fill( final Img< IntType > img )
+	{
+		final long[] dims = new long[ img.numDimensions() ];
+		img.dimensions( dims );
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( ( int ) IntervalIndexer.positionToIndex( c, img ) );
+		}
+		return img;
+	}
+
+	/**
+	 * Check that all samples are visited once, with the values of the source
+	 * at the subsampled positions.
+	 */
+	private void check( final SubsampleIntervalView< IntType > view )
+	{
+		final long[] viewDims = new long[ 3 ];
+		view.dimensions( viewDims );
+		final boolean flat = view.iterationOrder() instanceof FlatIterationOrder;
+
+		final boolean[] visited = new boolean[ ( int ) view.size() ];
+		final long[] pos = new long[ 3 ];
+		final long[] sourcePos = new long[ 3 ];
+		final Cursor< IntType > c = view.cursor();
+		final Cursor< IntType > jumping = view.cursor();
+		int i = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			for ( int d = 0; d < 3; ++d )
+			{
+				assertTrue( pos[ d ] >= 0 && pos[ d ] < viewDims[ d ] );
+				sourcePos[ d ] = pos[ d ] * steps[ d ];
+			}
+			assertEquals( IntervalIndexer.positionToIndex( sourcePos, dimensions ), c.get().get() );
+
+			final int index = ( int ) IntervalIndexer.positionToIndex( pos, viewDims );
+			assertFalse( visited[ index ] );
+			visited[ index ] = true;
+			if ( flat )
+				assertEquals( i, index );
+
+			jumping.jumpFwd( 1 );
+			assertEquals( c.get().get(), jumping.get().get() );
+			++i;
+		}
+		assertEquals( view.size(), i );
+
+		// jump over several samples at once
+		c.reset();
+		c.jumpFwd( view.size() / 2 );
+		jumping.reset();
+		for ( long j = 0; j < view.size() / 2; ++j )
+			jumping.fwd();
+		assertEquals( jumping.get().get(), c.get().get() );
+		assertEquals( jumping.getLongPosition( 1 ), c.getLongPosition( 1 ) );
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		final Img< IntType > img = fill( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final SubsampleIntervalView< IntType > view = Views.subsample( img, steps );
+		assertTrue( view.cursor() instanceof ArraySubsampleCursor );
+		assertTrue( view.iterationOrder() instanceof FlatIterationOrder );
+		assertTrue( Views.flatIterable( view ) == view );
+		check( view );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		// cells along dimension 1 contain at most one sample, some contain
+		// none
+		final Img< IntType > img = fill( new CellImgFactory< IntType >( 4, 3, 5 ).create( dimensions, new IntType() ) );
+		final SubsampleIntervalView< IntType > view = Views.subsample( img, steps );
+		assertTrue( view.cursor() instanceof CellSubIntervalCursor );
+		assertFalse( view.iterationOrder() instanceof FlatIterationOrder );
+		check( view );
+	}
+
+	@Test
+	public void testCellImgSingleCell()
+	{
+		final Img< IntType > img = fill( new CellImgFactory< IntType >( 23, 17, 2 ).create( dimensions, new IntType() ) );
+		final SubsampleIntervalView< IntType > view = Views.subsample( img, steps );
+		assertTrue( view.iterationOrder() instanceof FlatIterationOrder );
+		check( view );
+	}
+
+	@Test
+	public void testOtherImg()
+	{
+		final Img< IntType > img = fill( new PlanarImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final SubsampleIntervalView< IntType > view = Views.subsample( img, steps );
+		assertTrue( view.cursor() instanceof RandomAccessibleIntervalCursor );
+		check( view );
+	}
+
+	@Test
+	public void testLazyCellImgLoadsOnlyCellsWithSamples()
+	{
+		// 16 x 16 cells of 4 x 4 pixels, every other cell contains a sample
+		// in each dimension
+		final CellGrid grid = new CellGrid( new long[] { 64, 64 }, new int[] { 4, 4 } );
+		final AtomicInteger loads = new AtomicInteger();
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), index -> {
+			loads.incrementAndGet();
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final float[] data = new float[ cellDims[ 0 ] * cellDims[ 1 ] ];
+			for ( int i = 0; i < data.length; ++i )
+				data[ i ] = index;
+			return new Cell<>( cellDims, cellMin, new FloatArray( data ) );
+		} );
+
+		final SubsampleIntervalView< FloatType > view = Views.subsample( img, 8 );
+		final Cursor< FloatType > c = view.cursor();
+		int i = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			assertEquals( 2 * c.getLongPosition( 0 ) + 32 * c.getLongPosition( 1 ), c.get().get(), 0 );
+			++i;
+		}
+		assertEquals( 64, i );
+		assertEquals( 64, loads.get() );
+	}
+}